@@ -0,0 +1,170 @@
+package io.netty.perf.jmh;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.perf.collection.Histogram;
+import io.netty.perf.collection.HistogramRecorder;
+import io.netty.perf.collection.IntervalHistogram;
+import io.netty.perf.collection.LogLinearHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a latency and of querying the percentiles and mean of the histograms the meters record into.
+ *
+ * The recorded values are drawn up front from a latency like distribution, mostly tens of micro secs with a long
+ * tail, so the benchmarks measure the histograms rather than the random number generator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistogramBenchmark {
+    private final static long HIGHEST_TRACKABLE_VALUE = TimeUnit.SECONDS.toNanos(10);
+    private final static int SIGNIFICANT_DIGITS = 3;
+    private final static int INTERVALS = 200;
+    private final static long INTERVAL = 50000L;
+    private final static int VALUES = 1 << 16;
+
+    private final static double[] PERCENTILES = {0.5d, 0.9d, 0.99d, 0.999d, 0.9999d, 1.0d};
+
+    private final long[] values = new long[VALUES];
+    private int next;
+
+    private Histogram histogram;
+    private LogLinearHistogram logLinearHistogram;
+    private HistogramRecorder recorder;
+    private IntervalHistogram intervalHistogram;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = 20000L + (long) (-Math.log(1.0d - random.nextDouble()) * 80000.0d);
+        }
+
+        // the fixed 50 micro sec intervals of the histograms in docs/sctp
+        long[] upperBounds = new long[INTERVALS];
+        for (int i = 0; i < INTERVALS; i++) {
+            upperBounds[i] = (i + 1) * INTERVAL;
+        }
+        histogram = new Histogram(upperBounds);
+        logLinearHistogram = new LogLinearHistogram(HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+        recorder = new HistogramRecorder(HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+        intervalHistogram = new IntervalHistogram(HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+
+        for (long value : values) {
+            histogram.addObservation(value);
+            logLinearHistogram.addObservation(value);
+        }
+    }
+
+    private long nextValue() {
+        return values[next++ & (VALUES - 1)];
+    }
+
+    @Benchmark
+    public boolean histogramAddObservation() {
+        return histogram.addObservation(nextValue());
+    }
+
+    @Benchmark
+    public boolean logLinearAddObservation() {
+        return logLinearHistogram.addObservation(nextValue());
+    }
+
+    @Benchmark
+    public boolean recorderRecord() {
+        return recorder.record(nextValue());
+    }
+
+    @Benchmark
+    public boolean intervalAddObservation() {
+        return intervalHistogram.addObservation(nextValue());
+    }
+
+    @Benchmark
+    public double histogramGetMean() {
+        return histogram.getMean();
+    }
+
+    @Benchmark
+    public long histogramTwoNines() {
+        return histogram.getTwoNinesUpperBound();
+    }
+
+    @Benchmark
+    public double logLinearGetMean() {
+        return logLinearHistogram.getMean();
+    }
+
+    @Benchmark
+    public long logLinearMedian() {
+        return logLinearHistogram.getUpperBoundForFactor(0.5d);
+    }
+
+    @Benchmark
+    public long logLinearFourNines() {
+        return logLinearHistogram.getFourNinesUpperBound();
+    }
+
+    @Benchmark
+    public long logLinearInterpolatedFourNines() {
+        return logLinearHistogram.getValueAtFactor(0.9999d, true);
+    }
+
+    @Benchmark
+    public long[] logLinearPercentiles() {
+        return logLinearHistogram.getValuesAtFactors(PERCENTILES, true);
+    }
+
+    /**
+     * A query right after a new observation, which pays for rebuilding the cumulative index from its interval.
+     */
+    @Benchmark
+    public long logLinearRecordThenMedian() {
+        logLinearHistogram.addObservation(nextValue());
+        return logLinearHistogram.getUpperBoundForFactor(0.5d);
+    }
+
+    /**
+     * A mean right after a new observation, which must not wait for the cumulative index.
+     */
+    @Benchmark
+    public double logLinearRecordThenMean() {
+        logLinearHistogram.addObservation(nextValue());
+        return logLinearHistogram.getMean();
+    }
+
+    @Benchmark
+    public double histogramRecordThenMean() {
+        histogram.addObservation(nextValue());
+        return histogram.getMean();
+    }
+}
@@ -0,0 +1,110 @@
+package io.netty.perf.jmh;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.nio.sctp.MessageInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.sctp.SctpMessage;
+import io.netty.handler.codec.sctp.SctpInboundStreamingHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per message cost of {@link SctpInboundStreamingHandler}, driven through an {@link EmbeddedChannel} so no socket
+ * is involved: decoding complete or fragmented {@link SctpMessage}s, spread over the streams, back into frames. Run
+ * with '-prof gc' to see the bytes allocated per message. The fragments are built up front, so only the
+ * {@link SctpMessage}s and the duplicates they hold are allocated per message besides what the handler allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SctpInboundStreamingHandlerBenchmark {
+    private final static int PROTOCOL_ID = 0;
+    private final static int MIN_STREAM = 0;
+    private final static int MAX_STREAM = 9;
+
+    @Param({"24", "1024", "16384"})
+    public int frameSize;
+
+    /**
+     * Number of SctpMessages every decoded frame arrives in.
+     */
+    @Param({"1", "4"})
+    public int fragments;
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+    private EmbeddedChannel inbound;
+    private ByteBuf[] fragmentBuffers;
+    private MessageInfo[][] messageInfos;
+    private int stream;
+
+    @Setup
+    public void setup() {
+        inbound = new EmbeddedChannel(new SctpInboundStreamingHandler(PROTOCOL_ID, MIN_STREAM, MAX_STREAM));
+
+        final int fragmentSize = frameSize / fragments;
+        fragmentBuffers = new ByteBuf[fragments];
+        messageInfos = new MessageInfo[MAX_STREAM + 1][fragments];
+        for (int i = 0; i < fragments; i++) {
+            int size = i == fragments - 1 ? frameSize - i * fragmentSize : fragmentSize;
+            fragmentBuffers[i] = alloc.buffer(size).writeZero(size);
+            for (int streamIdentifier = MIN_STREAM; streamIdentifier <= MAX_STREAM; streamIdentifier++) {
+                messageInfos[streamIdentifier][i] = MessageInfo.createOutgoing(null, streamIdentifier).
+                        payloadProtocolID(PROTOCOL_ID).
+                        complete(i == fragments - 1);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        inbound.finish();
+        for (ByteBuf fragment : fragmentBuffers) {
+            fragment.release();
+        }
+    }
+
+    @Benchmark
+    public int decode() {
+        stream = stream == MAX_STREAM ? MIN_STREAM : stream + 1;
+        for (int i = 0; i < fragments; i++) {
+            // a duplicate starts at the indexes of the untouched fragment, the handler releases it
+            inbound.writeInbound(new SctpMessage(messageInfos[stream][i], fragmentBuffers[i].duplicate().retain()));
+        }
+        ByteBuf frame = (ByteBuf) inbound.readInbound();
+        int readable = frame.readableBytes();
+        frame.release();
+        return readable;
+    }
+}
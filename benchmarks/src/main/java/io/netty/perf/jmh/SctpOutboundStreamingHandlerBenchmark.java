@@ -0,0 +1,108 @@
+package io.netty.perf.jmh;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.sctp.SctpMessage;
+import io.netty.handler.codec.sctp.SctpOutboundStreamingHandler;
+import io.netty.perf.PerfConfig;
+import io.netty.perf.StreamSelection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per message cost of {@link SctpOutboundStreamingHandler}, driven through an {@link EmbeddedChannel} so no socket
+ * is involved: selecting the stream of a frame and encoding it into an {@link SctpMessage}. Run with '-prof gc' to
+ * see the bytes allocated per message. The frames are built up front, so only the duplicate passed to the handler
+ * is allocated per message besides what the handler allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SctpOutboundStreamingHandlerBenchmark {
+    private final static int PROTOCOL_ID = 0;
+    private final static int MIN_STREAM = 0;
+    private final static int MAX_STREAM = 9;
+    // frames of consecutive sequence numbers, enough for key-affinity to cover all default sessions
+    private final static int FRAMES = 256;
+
+    @Param({"24", "1024", "16384"})
+    public int frameSize;
+
+    @Param({"round-robin", "key-affinity", "least-queued"})
+    public String streamSelection;
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+    private EmbeddedChannel outbound;
+    private final ByteBuf[] frames = new ByteBuf[FRAMES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        outbound = new EmbeddedChannel(
+                new SctpOutboundStreamingHandler(PROTOCOL_ID, MIN_STREAM, MAX_STREAM,
+                        StreamSelection.forId(streamSelection).newSelector(new PerfConfig())));
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame(i, frameSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        outbound.finish();
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+    }
+
+    private ByteBuf frame(long sequence, int size) {
+        ByteBuf frame = alloc.buffer(size);
+        if (size >= 8) {
+            // the sequence number is the key of key-affinity
+            frame.writeLong(sequence);
+        }
+        return frame.writeZero(size - frame.writerIndex());
+    }
+
+    @Benchmark
+    public int encode() {
+        next = (next + 1) & (FRAMES - 1);
+        // a duplicate starts at the indexes of the untouched frame, the handler releases it
+        outbound.writeOutbound(frames[next].duplicate().retain());
+        SctpMessage message = (SctpMessage) outbound.readOutbound();
+        int streamIdentifier = message.streamIdentifier();
+        message.release();
+        return streamIdentifier;
+    }
+}
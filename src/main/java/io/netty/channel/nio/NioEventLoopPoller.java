@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.nio;
+
+import io.netty.channel.nio.AbstractNioChannel.NioUnsafe;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Polls the selector of a {@link NioEventLoop} from a task running on the loop, and processes the ready keys as
+ * the loop itself does, so that a task can keep polling without returning to the loop for every poll.
+ * {@link NioEventLoop} is final and keeps its selector package private, hence this class lives in its package.
+ */
+public final class NioEventLoopPoller {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(NioEventLoopPoller.class);
+
+    private NioEventLoopPoller() {
+    }
+
+    /**
+     * Select the ready keys of the loop without blocking and process them. Must be called on the loop.
+     *
+     * @param eventLoop to poll.
+     * @return the number of keys processed.
+     */
+    public static int selectNowAndProcess(NioEventLoop eventLoop) throws IOException {
+        // keeps a wakeup for the loop, as its own selectNow() does
+        eventLoop.selectNow();
+        final Set<SelectionKey> selectedKeys = eventLoop.selector.selectedKeys();
+        if (selectedKeys.isEmpty()) {
+            return 0;
+        }
+
+        int processed = 0;
+        if (selectedKeys instanceof SelectedSelectionKeySet) {
+            // the loop flips the same set after its own select, so it only gets the keys selected after this
+            final SelectionKey[] keys = ((SelectedSelectionKeySet) selectedKeys).flip();
+            for (SelectionKey k; (k = keys[processed]) != null; processed++) {
+                processSelectedKey(k);
+            }
+        } else {
+            Iterator<SelectionKey> i = selectedKeys.iterator();
+            while (i.hasNext()) {
+                final SelectionKey k = i.next();
+                i.remove();
+                processSelectedKey(k);
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void processSelectedKey(SelectionKey k) {
+        final Object a = k.attachment();
+        if (a instanceof AbstractNioChannel) {
+            processSelectedKey(k, (AbstractNioChannel) a);
+        } else {
+            processSelectedKey(k, (NioTask<SelectableChannel>) a);
+        }
+    }
+
+    // the same as in NioEventLoop
+    private static void processSelectedKey(SelectionKey k, AbstractNioChannel ch) {
+        final NioUnsafe unsafe = ch.unsafe();
+        if (!k.isValid()) {
+            // close the channel if the key is not valid anymore
+            unsafe.close(unsafe.voidPromise());
+            return;
+        }
+
+        try {
+            int readyOps = k.readyOps();
+            if ((readyOps & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0 || readyOps == 0) {
+                unsafe.read();
+                if (!ch.isOpen()) {
+                    // Connection already closed - no need to handle write.
+                    return;
+                }
+            }
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                ch.unsafe().forceFlush();
+            }
+            if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
+                // remove OP_CONNECT as otherwise Selector.select(..) will always return without blocking
+                int ops = k.interestOps();
+                ops &= ~SelectionKey.OP_CONNECT;
+                k.interestOps(ops);
+
+                unsafe.finishConnect();
+            }
+        } catch (CancelledKeyException e) {
+            unsafe.close(unsafe.voidPromise());
+        }
+    }
+
+    // the same as in NioEventLoop
+    private static void processSelectedKey(SelectionKey k, NioTask<SelectableChannel> task) {
+        int state = 0;
+        try {
+            task.channelReady(k.channel(), k);
+            state = 1;
+        } catch (Exception e) {
+            k.cancel();
+            invokeChannelUnregistered(task, k, e);
+            state = 2;
+        } finally {
+            switch (state) {
+            case 0:
+                k.cancel();
+                invokeChannelUnregistered(task, k, null);
+                break;
+            case 1:
+                if (!k.isValid()) { // Cancelled by channelReady()
+                    invokeChannelUnregistered(task, k, null);
+                }
+                break;
+            }
+        }
+    }
+
+    private static void invokeChannelUnregistered(NioTask<SelectableChannel> task, SelectionKey k, Throwable cause) {
+        try {
+            task.channelUnregistered(k.channel(), cause);
+        } catch (Exception e) {
+            logger.warn("Unexpected exception while running NioTask.channelUnregistered()", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Sends all messages with the same key on the same stream, so that the messages of a session keep their order
+ * while unrelated sessions on other streams are not blocked behind them.
+ */
+public abstract class KeyAffinitySctpStreamSelector extends SctpStreamSelector {
+
+    /**
+     * @param msg message to be sent, must not be modified.
+     * @return the key of the session the message belongs to.
+     */
+    protected abstract int key(ByteBuf msg);
+
+    @Override
+    public int selectStream(ByteBuf msg, int minStream, int maxStream) {
+        int hash = key(msg);
+        // spread the bits, sequential keys are common
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return minStream + (hash & Integer.MAX_VALUE) % (maxStream - minStream + 1);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Sends every message on the stream with the fewest messages not yet written, ties are broken round robin so
+ * the streams are still spread evenly while nothing is queued.
+ *
+ * Writes complete in the order they were made, so the selected streams are kept in a FIFO and the oldest one is
+ * released whenever a write completes.
+ */
+public class LeastQueuedSctpStreamSelector extends SctpStreamSelector {
+    private int[] queued = new int[0];
+    private int minStream;
+    private int last = -1;
+    private int[] selected = new int[16];
+    private int head;
+    private int size;
+
+    @Override
+    public int selectStream(ByteBuf msg, int minStream, int maxStream) {
+        final int streams = maxStream - minStream + 1;
+        if (queued.length != streams || this.minStream != minStream) {
+            queued = new int[streams];
+            this.minStream = minStream;
+            last = -1;
+            size = 0;
+        }
+
+        int stream = (last + 1) % streams;
+        for (int i = 1; i < streams; i++) {
+            final int candidate = (last + 1 + i) % streams;
+            if (queued[candidate] < queued[stream]) {
+                stream = candidate;
+            }
+        }
+        last = stream;
+
+        queued[stream]++;
+        if (size == selected.length) {
+            int[] grown = new int[selected.length << 1];
+            for (int i = 0; i < size; i++) {
+                grown[i] = selected[(head + i) % selected.length];
+            }
+            selected = grown;
+            head = 0;
+        }
+        selected[(head + size++) % selected.length] = stream;
+
+        return minStream + stream;
+    }
+
+    @Override
+    public void messageWritten() {
+        if (size == 0) {
+            return;
+        }
+        queued[selected[head]]--;
+        head = (head + 1) % selected.length;
+        size--;
+    }
+
+    @Override
+    public boolean tracksWrites() {
+        return true;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Spreads messages over the streams in a round robin fashion.
+ */
+public class RoundRobinSctpStreamSelector extends SctpStreamSelector {
+    private int next;
+
+    @Override
+    public int selectStream(ByteBuf msg, int minStream, int maxStream) {
+        if (next < minStream || next > maxStream) {
+            next = minStream;
+        }
+        return next++;
+    }
+}
@@ -16,20 +16,38 @@
 
 package io.netty.handler.codec.sctp;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.sctp.SctpMessage;
-import io.netty.handler.codec.CodecException;
 import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.AttributeKey;
 
 import java.util.List;
 
 /**
  * A ChannelHandler which decodes {@link io.netty.channel.sctp.SctpMessage}s to {@link io.netty.buffer.ByteBuf}s multiple SCTP Streams.
+ *
+ * Messages larger than a single receive are reassembled per stream, so fragments of messages on different streams
+ * may interleave. The fragments are added to a {@link CompositeByteBuf} as they are received, without copying.
+ *
+ * The stream of every message passed on is set in the {@link #STREAM_IDENTIFIER} channel attribute, so the
+ * following handlers can tell the streams apart while they read the message.
  */
 public class SctpInboundStreamingHandler extends MessageToMessageDecoder<SctpMessage> {
+    /**
+     * Stream identifier of the message being read by the following handlers.
+     */
+    public final static AttributeKey<Integer> STREAM_IDENTIFIER =
+            new AttributeKey<Integer>("sctpInboundStreamIdentifier");
+
+    // a composite buffer consolidates, i.e. copies, its components once it holds more than this
+    private final static int MAX_FRAGMENTS = Integer.MAX_VALUE;
+
     private final int protocolIdentifier;
     private final int minStream;
     private final int maxStream;
+    private final CompositeByteBuf[] fragments;
 
     /**Accepts {@link io.netty.channel.sctp.SctpMessage}s from range of streams and a specified application protocol.
      * @param protocolIdentifier supported application protocol.
@@ -43,6 +61,7 @@ public class SctpInboundStreamingHandler extends MessageToMessageDecoder<SctpMes
         this.protocolIdentifier = protocolIdentifier;
         this.minStream = minStream;
         this.maxStream = maxStream;
+        this.fragments = new CompositeByteBuf[maxStream - minStream + 1];
     }
 
     @Override
@@ -60,10 +79,51 @@ public class SctpInboundStreamingHandler extends MessageToMessageDecoder<SctpMes
 
     @Override
     protected void decode(ChannelHandlerContext ctx, SctpMessage msg, List<Object> out) throws Exception {
-        if (!msg.isComplete()) {
-            throw new CodecException(String.format("Received un-complete SctpMessage, please add %s in the " +
-                    "pipeline before this handler", SctpMessageCompletionHandler.class.getSimpleName()));
+        final int index = msg.streamIdentifier() - minStream;
+        final ByteBuf content = msg.content();
+        CompositeByteBuf fragment = fragments[index];
+
+        if (msg.isComplete()) {
+            // one message in, at most one out, so the attribute holds while it is read downstream
+            ctx.channel().attr(STREAM_IDENTIFIER).set(msg.streamIdentifier());
+        }
+
+        if (fragment == null) {
+            if (msg.isComplete()) {
+                out.add(content.retain());
+                return;
+            }
+            fragment = ctx.alloc().compositeBuffer(MAX_FRAGMENTS);
+            fragments[index] = fragment;
+        }
+
+        fragment.addComponent(content.retain());
+        fragment.writerIndex(fragment.writerIndex() + content.readableBytes());
+
+        if (msg.isComplete()) {
+            fragments[index] = null;
+            out.add(fragment);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseFragments();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseFragments();
+        super.handlerRemoved(ctx);
+    }
+
+    private void releaseFragments() {
+        for (int i = 0; i < fragments.length; i++) {
+            if (fragments[i] != null) {
+                fragments[i].release();
+                fragments[i] = null;
+            }
         }
-        out.add(msg.content().retain());
     }
 }
@@ -15,13 +15,16 @@
  */
 package io.netty.handler.codec.sctp;
 
+import com.sun.nio.sctp.MessageInfo;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.sctp.SctpMessage;
 import io.netty.handler.codec.MessageToMessageEncoder;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A ChannelHandler which encodes {@link io.netty.buffer.ByteBuf}s to {@link io.netty.channel.sctp.SctpMessage}s and send them over multiple SCTP Streams.
@@ -31,9 +34,25 @@ public class SctpOutboundStreamingHandler extends MessageToMessageEncoder<ByteBu
     private final int minStream;
     private final int maxStream;
 
-    private final int divider;
-
-    private final AtomicLong streamCounter;
+    private final SctpStreamSelector streamSelector;
+    private final int unorderedMinStream;
+    private final int unorderedMaxStream;
+    private final ChannelFutureListener writeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            streamSelector.messageWritten();
+        }
+    };
+    // stands in for a void promise, which takes no listeners, and fires its failures as a void promise does
+    private final ChannelFutureListener voidWriteListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            streamSelector.messageWritten();
+            if (!future.isSuccess()) {
+                future.channel().pipeline().fireExceptionCaught(future.cause());
+            }
+        }
+    };
 
     /**
      * Encode {@link io.netty.buffer.ByteBuf}s to {@link io.netty.channel.sctp.SctpMessage}s and send them over a multiple SCTP streams. Stream number is
@@ -45,23 +64,89 @@ public class SctpOutboundStreamingHandler extends MessageToMessageEncoder<ByteBu
      *                           of the association.
      */
     public SctpOutboundStreamingHandler(int protocolIdentifier, int minStream, int maxStream) {
+        this(protocolIdentifier, minStream, maxStream, new RoundRobinSctpStreamSelector());
+    }
+
+    /**
+     * Encode {@link io.netty.buffer.ByteBuf}s to {@link io.netty.channel.sctp.SctpMessage}s and send them over a multiple SCTP streams. Stream number is
+     * selected by the given selector from given range.
+     *
+     * @param protocolIdentifier supported application protocol.
+     * @param minStream          minimum stream number of the protocol,
+     * @param maxStream          maximum stream number of the protocol,should be <= to max no streams
+     *                           of the association.
+     * @param streamSelector     selects the stream of every message, owned by this handler.
+     */
+    public SctpOutboundStreamingHandler(int protocolIdentifier, int minStream, int maxStream,
+                                        SctpStreamSelector streamSelector) {
+        this(protocolIdentifier, minStream, maxStream, streamSelector, maxStream + 1, maxStream);
+    }
+
+    /**
+     * Encode {@link io.netty.buffer.ByteBuf}s to {@link io.netty.channel.sctp.SctpMessage}s and send them over a multiple SCTP streams. Stream number is
+     * selected by the given selector from given range, messages on the streams of the unordered range are sent
+     * unordered, so a lost or delayed chunk of another message does not hold them back.
+     *
+     * @param protocolIdentifier supported application protocol.
+     * @param minStream          minimum stream number of the protocol,
+     * @param maxStream          maximum stream number of the protocol,should be <= to max no streams
+     *                           of the association.
+     * @param streamSelector     selects the stream of every message, owned by this handler.
+     * @param unorderedMinStream minimum stream number sent unordered,
+     * @param unorderedMaxStream maximum stream number sent unordered, the range is empty if smaller than
+     *                           unorderedMinStream.
+     */
+    public SctpOutboundStreamingHandler(int protocolIdentifier, int minStream, int maxStream,
+                                        SctpStreamSelector streamSelector,
+                                        int unorderedMinStream, int unorderedMaxStream) {
         if (minStream > maxStream) {
             throw new IllegalArgumentException("minStream should be <= maxStream");
         }
+        if (streamSelector == null) {
+            throw new NullPointerException("streamSelector");
+        }
         this.protocolIdentifier = protocolIdentifier;
         this.minStream = minStream;
         this.maxStream = maxStream;
-        this.streamCounter = new AtomicLong(minStream);
+        this.streamSelector = streamSelector;
+        this.unorderedMinStream = unorderedMinStream;
+        this.unorderedMaxStream = unorderedMaxStream;
+    }
 
-        this.divider = maxStream + 1;
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (streamSelector.tracksWrites() && acceptOutboundMessage(msg)) {
+            // the promise of the last encoded message is the one of the original write
+            if (promise == ctx.voidPromise()) {
+                promise = ctx.newPromise().addListener(voidWriteListener);
+            } else {
+                promise.addListener(writeListener);
+            }
+        }
+        super.write(ctx, msg, promise);
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
-        out.add(new SctpMessage(protocolIdentifier, (int) selectStreamByRoundRobin(), msg.retain()));
+        final int streamIdentifier = streamSelector.selectStream(msg, minStream, maxStream);
+        if (isUnordered(msg, streamIdentifier)) {
+            MessageInfo messageInfo = MessageInfo.createOutgoing(null, streamIdentifier).
+                    payloadProtocolID(protocolIdentifier).
+                    unordered(true);
+            out.add(new SctpMessage(messageInfo, msg.retain()));
+        } else {
+            out.add(new SctpMessage(protocolIdentifier, streamIdentifier, msg.retain()));
+        }
     }
 
-    private long selectStreamByRoundRobin() {
-        return minStream + (streamCounter.getAndIncrement() % divider);
+    /**
+     * Decide if a message is sent unordered, override to decide per message.
+     *
+     * @param msg              message to be sent.
+     * @param streamIdentifier stream selected for the message.
+     * @return true if the stream is in the unordered range.
+     */
+    protected boolean isUnordered(ByteBuf msg, int streamIdentifier) {
+        return streamIdentifier >= unorderedMinStream && streamIdentifier <= unorderedMaxStream;
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Selects the SCTP stream every {@link ByteBuf} is sent on by a {@link SctpOutboundStreamingHandler}.
+ *
+ * A selector belongs to a single handler and is only called from the event loop of its channel, so
+ * implementations keep plain state and need no atomics or locks.
+ */
+public abstract class SctpStreamSelector {
+
+    /**
+     * Select the stream of a message.
+     *
+     * @param msg       message to be sent.
+     * @param minStream minimum stream number of the protocol.
+     * @param maxStream maximum stream number of the protocol.
+     * @return stream number between minStream and maxStream, both inclusive.
+     */
+    public abstract int selectStream(ByteBuf msg, int minStream, int maxStream);
+
+    /**
+     * Called once the write of a message has completed, successfully or not, in the order the streams of the
+     * messages were selected. Does nothing by default.
+     */
+    public void messageWritten() {
+    }
+
+    /**
+     * @return true if {@link #messageWritten()} needs to be called, false by default.
+     */
+    public boolean tracksWrites() {
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the heap bytes allocated by the threads of the JVM since the counter was created, using the per thread
+ * allocation accounting of HotSpot. Only threads alive at the end are counted, so threads dying in between, like
+ * the event loops of a previous run shutting down, can not turn the count negative.
+ */
+final class AllocationCounter {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<Long, Long> startBytes = new HashMap<Long, Long>();
+    private final boolean supported;
+
+    AllocationCounter() {
+        com.sun.management.ThreadMXBean threads = allocationThreads();
+        supported = threads != null;
+        if (supported) {
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                startBytes.put(ids[i], bytes[i]);
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationThreads() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        return threads;
+    }
+
+    /**
+     * @return bytes allocated since the counter was created, or -1 if the JVM does not count allocations.
+     */
+    long allocatedBytes() {
+        return allocatedBytes(null);
+    }
+
+    /**
+     * @param threadIds ids of the threads to count, null for all of them.
+     * @return bytes allocated by these threads since the counter was created, or -1 if the JVM does not count
+     * allocations.
+     */
+    long allocatedBytes(Collection<Long> threadIds) {
+        if (!supported) {
+            return -1L;
+        }
+        com.sun.management.ThreadMXBean threads = allocationThreads();
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+
+        long allocated = 0L;
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] < 0L || threadIds != null && !threadIds.contains(ids[i])) {
+                continue;
+            }
+            Long start = startBytes.get(ids[i]);
+            allocated += start == null || start < 0L ? bytes[i] : bytes[i] - start;
+        }
+        return allocated;
+    }
+}
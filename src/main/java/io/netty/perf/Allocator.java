@@ -0,0 +1,111 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+
+/**
+ * The {@link ByteBufAllocator}s a {@link NettyLatencyTest} can run with, by their command line name. The
+ * allocator is set as {@link ChannelOption#ALLOCATOR} on the client and server bootstraps, so it serves both
+ * the frames the meters write and the buffers the transports read into.
+ */
+public enum Allocator {
+    /**
+     * Whatever the channels use without the option, {@link ByteBufAllocator#DEFAULT}.
+     */
+    DEFAULT("default", false, false) {
+        @Override
+        public ByteBufAllocator newAllocator(PerfConfig config) {
+            return null;
+        }
+    },
+    UNPOOLED_HEAP("unpooled-heap", false, false) {
+        @Override
+        public ByteBufAllocator newAllocator(PerfConfig config) {
+            return new UnpooledByteBufAllocator(false);
+        }
+    },
+    UNPOOLED_DIRECT("unpooled-direct", false, true) {
+        @Override
+        public ByteBufAllocator newAllocator(PerfConfig config) {
+            return new UnpooledByteBufAllocator(true);
+        }
+    },
+    POOLED_HEAP("pooled-heap", true, false) {
+        @Override
+        public ByteBufAllocator newAllocator(PerfConfig config) {
+            return new PooledByteBufAllocator(false, config.poolArenas(), config.poolArenas(),
+                    config.poolPageSize(), config.poolMaxOrder());
+        }
+    },
+    POOLED_DIRECT("pooled-direct", true, true) {
+        @Override
+        public ByteBufAllocator newAllocator(PerfConfig config) {
+            return new PooledByteBufAllocator(true, config.poolArenas(), config.poolArenas(),
+                    config.poolPageSize(), config.poolMaxOrder());
+        }
+    };
+
+    private final String id;
+    private final boolean pooled;
+    private final boolean direct;
+
+    Allocator(String id, boolean pooled, boolean direct) {
+        this.id = id;
+        this.pooled = pooled;
+        this.direct = direct;
+    }
+
+    /**
+     * @param config of the run, pooled allocators take their arena, page and chunk sizes from it.
+     * @return a new allocator shared by all channels of the run, null to leave the channels' default.
+     */
+    public abstract ByteBufAllocator newAllocator(PerfConfig config);
+
+    /**
+     * @return the command line name of the allocator.
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return true if the allocator pools its buffers, false for {@link #DEFAULT} whatever it is configured as.
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * @return true if the allocator hands out direct buffers, false for {@link #DEFAULT} whatever it is
+     * configured as.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public static Allocator forId(String id) {
+        for (Allocator allocator : values()) {
+            if (allocator.id.equals(id)) {
+                return allocator;
+            }
+        }
+        throw new IllegalArgumentException("Unknown allocator " + id);
+    }
+}
@@ -0,0 +1,114 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of an earlier run, loaded from the results.csv written with {@link PerfConfig#resultsDir()}, to check
+ * a new run against. A configuration regresses if its round trip 50%, 99% or 99.99% grows, or its msgs/sec
+ * drops, by more than the threshold, or if the new run did not measure a value the baseline has. Configurations
+ * without a result in the baseline are not checked.
+ */
+public final class Baseline {
+    private final static String[] LATENCY_COLUMNS = {"rtt50", "rtt99", "rtt9999"};
+    private final static String THROUGHPUT_COLUMN = "messagesPerSecond";
+
+    private final Map<String, ResultSummary> results = new HashMap<String, ResultSummary>();
+
+    private Baseline() {
+    }
+
+    /**
+     * Load a baseline.
+     *
+     * @param file results.csv of the baseline run.
+     * @return the baseline.
+     * @throws IOException if the file can not be read.
+     * @throws IllegalArgumentException if the file is no results.csv, or holds two rows of the same configuration
+     * and it is not clear which one to check against.
+     */
+    public static Baseline load(String file) throws IOException {
+        Baseline baseline = new Baseline();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            List<String> header = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                if (header == null) {
+                    header = ResultSummary.splitCsv(line);
+                } else {
+                    ResultSummary result = ResultSummary.fromCsv(header, ResultSummary.splitCsv(line));
+                    if (baseline.results.put(result.key(), result) != null) {
+                        throw new IllegalArgumentException("Two results of " + result.key() + " in " + file);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return baseline;
+    }
+
+    /**
+     * Check a result against the baseline result of the same configuration.
+     *
+     * @param result           of the new run.
+     * @param thresholdPercent regressions up to this percentage are tolerated.
+     * @return a description of every regression, empty if none or the configuration is not in the baseline.
+     */
+    public List<String> regressions(ResultSummary result, double thresholdPercent) {
+        List<String> regressions = new ArrayList<String>();
+        ResultSummary baseline = results.get(result.key());
+        if (baseline == null) {
+            return regressions;
+        }
+
+        final double factor = thresholdPercent / 100.0d;
+        for (String column : LATENCY_COLUMNS) {
+            double expected = baseline.value(column);
+            double actual = result.value(column);
+            if (!Double.isNaN(expected) && (Double.isNaN(actual) || actual > expected * (1.0d + factor))) {
+                regressions.add(regression(result, column, expected, actual));
+            }
+        }
+
+        double expected = baseline.value(THROUGHPUT_COLUMN);
+        double actual = result.value(THROUGHPUT_COLUMN);
+        if (!Double.isNaN(expected) && (Double.isNaN(actual) || actual < expected * (1.0d - factor))) {
+            regressions.add(regression(result, THROUGHPUT_COLUMN, expected, actual));
+        }
+        return regressions;
+    }
+
+    private static String regression(ResultSummary result, String column, double expected, double actual) {
+        if (Double.isNaN(actual)) {
+            return String.format("%s %s was %.0f, now not measured", result.key(), column, expected);
+        }
+        return String.format("%s %s regressed from %.0f to %.0f (%+.1f%%)", result.key(), column, expected, actual,
+                (actual - expected) * 100.0d / expected);
+    }
+}
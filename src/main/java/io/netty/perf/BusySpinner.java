@@ -0,0 +1,127 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.nio.NioEventLoop;
+import io.netty.channel.nio.NioEventLoopPoller;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.concurrent.ScheduledTasks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a {@link NioEventLoop} busy polling instead of parking in select() while it waits for messages.
+ *
+ * NioEventLoop is final, so the spinning is driven from a task scheduled on the loop with a fixed delay of
+ * 1 nano sec. The task polls the selector with selectNow() and processes the ready keys itself, see
+ * {@link NioEventLoopPoller}, until the loop has other work: a task queued, a scheduled task due, or a shutdown.
+ * It then returns to the loop, whose deadline is already due again, so the loop only calls selectNow(), runs its
+ * tasks, this one among them, and the spinning carries on. Polling allocates nothing, every return to the loop
+ * costs a node of its task queue, which only happens along with the other work.
+ *
+ * Once {@link PerfConfig#spinParkMicros()} passed without a read the spinner stops rescheduling itself, the loop
+ * parks in select() and the next read resumes spinning. A spinner is only ever touched by its event loop.
+ */
+final class BusySpinner implements Runnable {
+    private final NioEventLoop eventLoop;
+    private final long parkAfterNanos;
+    private ScheduledFuture<?> future;
+    private long reads;
+    private long lastReads;
+    private long idleSince;
+
+    /**
+     * @param eventLoop      to keep spinning, must be a {@link NioEventLoop}.
+     * @param parkAfterNanos idle nano secs before parking, 0 to never park.
+     */
+    BusySpinner(EventLoop eventLoop, long parkAfterNanos) {
+        if (!(eventLoop instanceof NioEventLoop)) {
+            throw new IllegalArgumentException("Only a NioEventLoop can busy spin, not " + eventLoop);
+        }
+        this.eventLoop = (NioEventLoop) eventLoop;
+        this.parkAfterNanos = parkAfterNanos;
+    }
+
+    /**
+     * Start spinning, or resume it if parked. Must be called on the event loop.
+     */
+    void spin() {
+        if (future == null) {
+            lastReads = reads;
+            idleSince = 0L;
+            future = eventLoop.scheduleWithFixedDelay(this, 0L, 1L, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Count a read of a channel of the event loop, resuming spinning if parked. Must be called on the event loop.
+     */
+    void read() {
+        reads++;
+        if (future == null) {
+            spin();
+        }
+    }
+
+    /**
+     * Stop spinning until the next read. Must be called on the event loop.
+     */
+    void park() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        // the reads of the processed keys come back through read()
+        for (;;) {
+            try {
+                NioEventLoopPoller.selectNowAndProcess(eventLoop);
+            } catch (IOException e) {
+                // the loop selects again and handles the failure on its own
+                return;
+            }
+
+            if (future == null || eventLoop.pendingTasks() > 0 || ScheduledTasks.isTaskDue(eventLoop) ||
+                eventLoop.isShuttingDown()) {
+                return;
+            }
+
+            if (parkAfterNanos == 0L) {
+                continue;
+            }
+
+            if (reads != lastReads) {
+                lastReads = reads;
+                idleSince = 0L;
+                continue;
+            }
+
+            // only idle passes read the clock
+            final long now = System.nanoTime();
+            if (idleSince == 0L) {
+                idleSince = now;
+            } else if (now - idleSince > parkAfterNanos) {
+                park();
+                return;
+            }
+        }
+    }
+}
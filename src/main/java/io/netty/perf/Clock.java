@@ -0,0 +1,28 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The time source a {@link NettyLatencyTest} stamps its frames with and reads on their arrival. Every latency
+ * sample is the difference of two readings, taken on different threads, so the clock must be consistent across
+ * threads and its own cost is part of every sample, see {@link ClockCalibration}.
+ */
+public interface Clock {
+    /**
+     * @return the current time in nano secs, only meaningful relative to other readings of the same clock.
+     */
+    long nanoTime();
+}
@@ -0,0 +1,121 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost and granularity of reading a {@link Clock}, measured before every run. Every latency sample spans
+ * from one reading to another, so it includes about the cost of one reading: tens of nano secs with some
+ * clocksources, which is no longer noise next to a round trip of a few micro secs, and differs from host to host.
+ */
+public final class ClockCalibration {
+    private final static int ROUNDS = 20;
+    private final static int READS = 10000;
+    private final static int TICKS = 1000;
+    private final static long GRANULARITY_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(50L);
+
+    // keeps the JIT from removing the readings of the calibration loops
+    private static volatile long sink;
+
+    private final double overheadNanos;
+    private final long granularityNanos;
+
+    public ClockCalibration(double overheadNanos, long granularityNanos) {
+        this.overheadNanos = overheadNanos;
+        this.granularityNanos = granularityNanos;
+    }
+
+    /**
+     * Measure the clock on the calling thread. It takes a few milli secs, the event loops should be idle.
+     *
+     * @param clock to measure.
+     * @return the cost of a reading, the cheapest of several rounds of back to back readings, and the smallest
+     * step between two different readings.
+     */
+    public static ClockCalibration calibrate(Clock clock) {
+        long sum = 0L;
+        double overhead = Double.MAX_VALUE;
+        // the first rounds warm up the reading, the cheapest round is the one least disturbed
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = clock.nanoTime();
+            for (int i = 0; i < READS; i++) {
+                sum += clock.nanoTime();
+            }
+            final long end = clock.nanoTime();
+            overhead = Math.min(overhead, (end - start) / (double) (READS + 1));
+        }
+
+        long granularity = Long.MAX_VALUE;
+        long last = clock.nanoTime();
+        final long deadline = System.nanoTime() + GRANULARITY_TIMEOUT;
+        for (int ticks = 0, reads = 0; ticks < TICKS; reads++) {
+            final long now = clock.nanoTime();
+            if (now != last) {
+                if (now - last > 0L) {
+                    granularity = Math.min(granularity, now - last);
+                }
+                last = now;
+                ticks++;
+            }
+            // a coarse clock may not tick often enough
+            if ((reads & 1023) == 0 && System.nanoTime() - deadline > 0L) {
+                break;
+            }
+        }
+        sink = sum;
+
+        return new ClockCalibration(Math.max(0.0d, overhead),
+                granularity == Long.MAX_VALUE ? GRANULARITY_TIMEOUT : granularity);
+    }
+
+    /**
+     * Merge the calibrations of several runs, e.g. the iterations of a benchmark.
+     *
+     * @param calibrations to merge, at least one.
+     * @return the mean cost of a reading and the coarsest granularity.
+     */
+    public static ClockCalibration merge(List<ClockCalibration> calibrations) {
+        double overhead = 0.0d;
+        long granularity = 0L;
+        for (ClockCalibration calibration : calibrations) {
+            overhead += calibration.overheadNanos / calibrations.size();
+            granularity = Math.max(granularity, calibration.granularityNanos);
+        }
+        return new ClockCalibration(overhead, granularity);
+    }
+
+    /**
+     * @return nano secs a reading of the clock costs.
+     */
+    public double overheadNanos() {
+        return overheadNanos;
+    }
+
+    /**
+     * @return the smallest step in nano secs between two different readings of the clock, latencies are only
+     * resolved down to it.
+     */
+    public long granularityNanos() {
+        return granularityNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("overhead=%.1fns, granularity=%dns", overheadNanos, granularityNanos);
+    }
+}
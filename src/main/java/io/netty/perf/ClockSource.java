@@ -0,0 +1,87 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The built in {@link Clock}s, by their command line name. Which one is cheaper to read depends on the
+ * clocksource of the host, e.g. tsc or a paravirtual clock in a VM, which the calibration of every run reports.
+ */
+public enum ClockSource implements Clock {
+    /**
+     * {@link System#nanoTime()}, the monotonic clock, CLOCK_MONOTONIC on Linux.
+     */
+    NANO_TIME("nano-time") {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    },
+    /**
+     * The wall clock, CLOCK_REALTIME on Linux, in nano secs since the epoch, the one clock hosts can keep in sync,
+     * e.g. with PTP. It reads {@link System#nanoTime()} plus its offset to the wall clock, taken at a milli sec
+     * tick of {@link System#currentTimeMillis()} by the first reading, which spins for up to a milli sec, so a
+     * reading allocates nothing and costs what nano-time does. It follows the rate NTP or PTP set for the clocks,
+     * not the steps taken after the first reading.
+     */
+    REALTIME("realtime") {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime() + RealtimeOffset.NANOS;
+        }
+    };
+
+    private final String id;
+
+    ClockSource(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the command line name of the clock.
+     */
+    public String id() {
+        return id;
+    }
+
+    public static ClockSource forId(String id) {
+        for (ClockSource clockSource : values()) {
+            if (clockSource.id.equals(id)) {
+                return clockSource;
+            }
+        }
+        throw new IllegalArgumentException("Unknown clockSource " + id);
+    }
+
+    private static final class RealtimeOffset {
+        static final long NANOS = measure();
+
+        private static long measure() {
+            // the milli secs only change at a tick, the nano time read just before the first change is at most
+            // one loop iteration before it
+            final long millis = System.currentTimeMillis();
+            long now;
+            long tickMillis;
+            do {
+                now = System.nanoTime();
+                tickMillis = System.currentTimeMillis();
+            } while (tickMillis == millis);
+
+            return TimeUnit.MILLISECONDS.toNanos(tickMillis) - now;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.MessageToMessageCodec;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Unwraps inbound {@link DatagramPacket}s to their content and wraps outbound {@link ByteBuf}s in
+ * {@link DatagramPacket}s addressed to the sender of the last inbound packet, so the latency meters can
+ * echo over an unconnected datagram channel. On a connected channel, or before anything was received,
+ * outbound {@link ByteBuf}s are passed through as is.
+ */
+public class DatagramFrameCodec extends MessageToMessageCodec<DatagramPacket, ByteBuf> {
+    private InetSocketAddress lastSender;
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        if (lastSender != null && ctx.channel().remoteAddress() == null) {
+            out.add(new DatagramPacket(msg.retain(), lastSender));
+        } else {
+            out.add(msg.retain());
+        }
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) throws Exception {
+        lastSender = msg.sender();
+        out.add(msg.content().retain());
+    }
+}
@@ -0,0 +1,171 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When the client send path and the echoing server flush their writes, by their command line name. Fewer
+ * flushes mean fewer write system calls, at the cost of frames waiting in the outbound buffer.
+ */
+public enum FlushStrategy {
+    /**
+     * Flush once at the end of every batch of writes, i.e. every catch-up loop or read burst.
+     */
+    BATCH("batch") {
+        @Override
+        public Flusher newFlusher(ChannelHandlerContext ctx, PerfConfig config) {
+            return new Flusher(ctx) {
+                @Override
+                public void written() {
+                }
+
+                @Override
+                public void batchComplete() {
+                    flush();
+                }
+            };
+        }
+    },
+    /**
+     * Flush every frame as soon as it is written.
+     */
+    PER_MESSAGE("per-message") {
+        @Override
+        public Flusher newFlusher(ChannelHandlerContext ctx, PerfConfig config) {
+            return new Flusher(ctx) {
+                @Override
+                public void written() {
+                    flush();
+                }
+
+                @Override
+                public void batchComplete() {
+                }
+            };
+        }
+    },
+    /**
+     * Flush every {@link PerfConfig#flushEvery()} frames, and whatever is left at the end of a batch.
+     */
+    EVERY_N("every-n") {
+        @Override
+        public Flusher newFlusher(ChannelHandlerContext ctx, final PerfConfig config) {
+            return new Flusher(ctx) {
+                private int pending;
+
+                @Override
+                public void written() {
+                    if (++pending >= config.flushEvery()) {
+                        pending = 0;
+                        flush();
+                    }
+                }
+
+                @Override
+                public void batchComplete() {
+                    if (pending > 0) {
+                        pending = 0;
+                        flush();
+                    }
+                }
+            };
+        }
+    },
+    /**
+     * Flush from a timer on the channel's event loop every {@link PerfConfig#flushIntervalMicros()}, if
+     * anything was written since the last flush, which bounds the added latency by the interval.
+     */
+    INTERVAL("interval") {
+        @Override
+        public Flusher newFlusher(ChannelHandlerContext ctx, PerfConfig config) {
+            return new IntervalFlusher(ctx, config.flushIntervalMicros());
+        }
+    };
+
+    private final String id;
+
+    FlushStrategy(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @param ctx    of the handler writing the frames, flushes go through it.
+     * @param config of the run.
+     * @return a new flusher for the channel of the context.
+     */
+    public abstract Flusher newFlusher(ChannelHandlerContext ctx, PerfConfig config);
+
+    /**
+     * @return the command line name of the strategy.
+     */
+    public String id() {
+        return id;
+    }
+
+    public static FlushStrategy forId(String id) {
+        for (FlushStrategy strategy : values()) {
+            if (strategy.id.equals(id)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown flush strategy " + id);
+    }
+
+    private static final class IntervalFlusher extends Flusher implements Runnable {
+        private final ScheduledFuture<?> timer;
+        // frames may be written by a thread other than the event loop, e.g. in the closed loop latency mode
+        private volatile boolean pending;
+
+        IntervalFlusher(ChannelHandlerContext ctx, long intervalMicros) {
+            super(ctx);
+            timer = ctx.executor().scheduleAtFixedRate(this, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+            ctx.channel().closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    close();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            if (pending) {
+                pending = false;
+                flush();
+            }
+        }
+
+        @Override
+        public void written() {
+            pending = true;
+        }
+
+        @Override
+        public void batchComplete() {
+        }
+
+        @Override
+        public void close() {
+            timer.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Decides when the frames written to a channel are flushed to the transport, see {@link FlushStrategy}. A
+ * flusher belongs to one channel and is told about every frame written and about the end of every batch of
+ * writes, e.g. a catch-up loop of the send path or a read burst of the echoing server.
+ */
+public abstract class Flusher {
+    private final ChannelHandlerContext ctx;
+    private long flushes;
+
+    protected Flusher(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * Called after a frame has been written.
+     */
+    public abstract void written();
+
+    /**
+     * Called once a batch of writes is complete.
+     */
+    public abstract void batchComplete();
+
+    /**
+     * Stop flushing on a timer, if the strategy does.
+     */
+    public void close() {
+    }
+
+    /**
+     * Flush the channel and count it.
+     */
+    protected void flush() {
+        flushes++;
+        ctx.flush();
+    }
+
+    protected ChannelHandlerContext ctx() {
+        return ctx;
+    }
+
+    /**
+     * @return number of flushes since the last reset, each one is at most one write system call.
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    public void resetFlushes() {
+        flushes = 0L;
+    }
+}
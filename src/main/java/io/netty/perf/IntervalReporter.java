@@ -0,0 +1,93 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.perf.collection.IntervalHistogram;
+import io.netty.perf.collection.LogLinearHistogram;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the round trip percentiles and msgs/sec of every {@link PerfConfig#reportIntervalMillis()} of a run, so
+ * a stall in the middle of a long run shows up as such rather than as tail latency of the whole run. The meters
+ * keep recording into their {@link IntervalHistogram}s while the reporter drains them.
+ */
+final class IntervalReporter implements Runnable {
+    private final static double[] PERCENTILES = {0.5d, 0.9d, 0.99d, 0.999d, 0.9999d};
+
+    private final List<IntervalHistogram> histograms;
+    private final LogLinearHistogram interval;
+    private final long intervalMillis;
+    private final Clock clock;
+    private final long runStartTime;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "interval-reporter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    private long intervalStartTime;
+    private int intervals;
+
+    IntervalReporter(List<IntervalHistogram> histograms, PerfConfig config, Clock clock, long runStartTime) {
+        this.histograms = histograms;
+        this.interval = new LogLinearHistogram(config.highestTrackableLatency(), config.significantDigits());
+        this.intervalMillis = config.reportIntervalMillis();
+        this.clock = clock;
+        this.runStartTime = runStartTime;
+        this.intervalStartTime = runStartTime;
+    }
+
+    void start() {
+        executor.scheduleAtFixedRate(this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop reporting and report the last, partial interval.
+     */
+    void stop() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(1L, TimeUnit.SECONDS);
+        run();
+    }
+
+    @Override
+    public synchronized void run() {
+        final long now = clock.nanoTime();
+        for (IntervalHistogram histogram : histograms) {
+            histogram.drainTo(interval);
+        }
+
+        final long elapsed = Math.max(1L, now - intervalStartTime);
+        // interpolated, an interval holds few observations so the bucket upper bounds would overstate them
+        final long[] percentiles = interval.getCount() == 0L ? new long[PERCENTILES.length]
+                : interval.getValuesAtFactors(PERCENTILES, true);
+        System.out.println(String.format(
+                "interval %4d %9.3fs msgs/sec=%.0f rtt 50%%=%d 90%%=%d 99%%=%d 99.9%%=%d 99.99%%=%d max=%d",
+                ++intervals, (now - runStartTime) / 1e9d, interval.getCount() * 1e9d / elapsed,
+                percentiles[0], percentiles[1], percentiles[2], percentiles[3], percentiles[4], interval.getMax()));
+
+        interval.clear();
+        intervalStartTime = now;
+    }
+}
@@ -0,0 +1,316 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.perf.collection.LogLinearHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies of a {@link NettyLatencyTest} run, split by the leg of the echo path they measure, in aggregate
+ * and for every client connection.
+ */
+public final class LatencyResult {
+    private final LogLinearHistogram clientToServer;
+    private final LogLinearHistogram serverToClient;
+    private final LogLinearHistogram roundTrip;
+    private final long sent;
+    private final long received;
+    private final long reordered;
+    private final long elapsedNanos;
+    private final long allocatedBytes;
+    private final long serverAllocatedBytes;
+    private final long flushes;
+    private final ClockCalibration clockCalibration;
+    private final List<StreamLatency> streams;
+    private final List<LatencyResult> connections;
+
+    public LatencyResult(LogLinearHistogram clientToServer, LogLinearHistogram serverToClient,
+                         LogLinearHistogram roundTrip, long sent, long received, long reordered,
+                         long elapsedNanos, long allocatedBytes, long serverAllocatedBytes, long flushes,
+                         ClockCalibration clockCalibration, List<StreamLatency> streams,
+                         List<LatencyResult> connections) {
+        this.clientToServer = clientToServer;
+        this.serverToClient = serverToClient;
+        this.roundTrip = roundTrip;
+        this.sent = sent;
+        this.received = received;
+        this.reordered = reordered;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.serverAllocatedBytes = serverAllocatedBytes;
+        this.flushes = flushes;
+        this.clockCalibration = clockCalibration;
+        this.streams = streams;
+        this.connections = connections;
+    }
+
+    /**
+     * Merge the results of several runs of the same configuration, e.g. the iterations of a benchmark.
+     *
+     * @param results to merge, at least one.
+     * @return a result with the observations and counts of all of them, without per connection results.
+     */
+    public static LatencyResult merge(List<LatencyResult> results) {
+        LatencyResult first = results.get(0);
+        LogLinearHistogram clientToServer = first.clientToServer == null ? null : copyOf(first.clientToServer);
+        LogLinearHistogram serverToClient = copyOf(first.serverToClient);
+        LogLinearHistogram roundTrip = copyOf(first.roundTrip);
+        long sent = first.sent;
+        long received = first.received;
+        long reordered = first.reordered;
+        long elapsedNanos = first.elapsedNanos;
+        long allocatedBytes = first.allocatedBytes;
+        long serverAllocatedBytes = first.serverAllocatedBytes;
+        long flushes = first.flushes;
+        List<ClockCalibration> clockCalibrations = new ArrayList<ClockCalibration>(results.size());
+        if (first.clockCalibration != null) {
+            clockCalibrations.add(first.clockCalibration);
+        }
+        List<StreamLatency> streams = new ArrayList<StreamLatency>(first.streams.size());
+        for (StreamLatency stream : first.streams) {
+            streams.add(stream.copy());
+        }
+
+        for (int i = 1, size = results.size(); i < size; i++) {
+            LatencyResult result = results.get(i);
+            if (clientToServer != null) {
+                clientToServer.addObservations(result.clientToServer);
+            }
+            serverToClient.addObservations(result.serverToClient);
+            roundTrip.addObservations(result.roundTrip);
+            sent += result.sent;
+            received += result.received;
+            reordered += result.reordered;
+            elapsedNanos += result.elapsedNanos;
+            allocatedBytes = allocatedBytes < 0L || result.allocatedBytes < 0L ?
+                    -1L : allocatedBytes + result.allocatedBytes;
+            serverAllocatedBytes = serverAllocatedBytes < 0L || result.serverAllocatedBytes < 0L ?
+                    -1L : serverAllocatedBytes + result.serverAllocatedBytes;
+            flushes = flushes < 0L || result.flushes < 0L ? -1L : flushes + result.flushes;
+            if (result.clockCalibration != null) {
+                clockCalibrations.add(result.clockCalibration);
+            }
+            for (int j = 0; j < streams.size(); j++) {
+                streams.get(j).addObservations(result.streams.get(j));
+            }
+        }
+
+        return new LatencyResult(clientToServer, serverToClient, roundTrip, sent, received, reordered,
+                elapsedNanos, allocatedBytes, serverAllocatedBytes, flushes,
+                clockCalibrations.isEmpty() ? null : ClockCalibration.merge(clockCalibrations), streams,
+                new ArrayList<LatencyResult>(0));
+    }
+
+    private static LogLinearHistogram copyOf(LogLinearHistogram histogram) {
+        LogLinearHistogram copy = new LogLinearHistogram(histogram.getHighestTrackableValue(),
+                histogram.getSignificantDigits());
+        copy.addObservations(histogram);
+        return copy;
+    }
+
+    /**
+     * @return client send time to server receive time, recorded by the server. Null for the results of
+     * single connections, the server does not tell the client connections apart.
+     */
+    public LogLinearHistogram clientToServer() {
+        return clientToServer;
+    }
+
+    /**
+     * @return server send time to client receive time, recorded by the client.
+     */
+    public LogLinearHistogram serverToClient() {
+        return serverToClient;
+    }
+
+    /**
+     * @return client send time to client receive time of the echo, recorded by the client.
+     */
+    public LogLinearHistogram roundTrip() {
+        return roundTrip;
+    }
+
+    /**
+     * @return number of messages sent by the client.
+     */
+    public long sent() {
+        return sent;
+    }
+
+    /**
+     * @return number of echoes received by the client.
+     */
+    public long received() {
+        return received;
+    }
+
+    /**
+     * @return number of messages sent for which no echo was received.
+     */
+    public long lost() {
+        return sent - received;
+    }
+
+    /**
+     * @return number of echoes received after an echo of a later message.
+     */
+    public long reordered() {
+        return reordered;
+    }
+
+    /**
+     * @return nano secs from the start of the run to the last echo received.
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return heap bytes allocated by all threads of the JVM over the run, -1 if unknown, e.g. for the results
+     * of single connections.
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return heap bytes allocated per echo received, NaN if unknown.
+     */
+    public double allocatedBytesPerMessage() {
+        if (allocatedBytes < 0L || received == 0L) {
+            return Double.NaN;
+        }
+        return allocatedBytes / (double) received;
+    }
+
+    /**
+     * @return heap bytes allocated by the event loop threads of the server over the run, its whole receive and
+     * echo path without the client frames. -1 if unknown, e.g. for the results of single connections.
+     */
+    public long serverAllocatedBytes() {
+        return serverAllocatedBytes;
+    }
+
+    /**
+     * @return heap bytes the server allocated per echo received, NaN if unknown.
+     */
+    public double serverAllocatedBytesPerMessage() {
+        if (serverAllocatedBytes < 0L || received == 0L) {
+            return Double.NaN;
+        }
+        return serverAllocatedBytes / (double) received;
+    }
+
+    /**
+     * @return flushes of the client send path and the echoing server over the run, each one is at most one
+     * write system call. -1 if unknown, e.g. for the results of single connections.
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    /**
+     * @return flushes per echo received, NaN if unknown.
+     */
+    public double flushesPerMessage() {
+        if (flushes < 0L || received == 0L) {
+            return Double.NaN;
+        }
+        return flushes / (double) received;
+    }
+
+    /**
+     * @return echoes received per second over the run.
+     */
+    public double messagesPerSecond() {
+        if (elapsedNanos <= 0L) {
+            return 0.0d;
+        }
+        return received * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return cost and granularity of the clock the latencies were measured with, calibrated before the run. Null
+     * for the results of single connections.
+     */
+    public ClockCalibration clockCalibration() {
+        return clockCalibration;
+    }
+
+    /**
+     * @return the latencies of every SCTP stream, empty for other transports and for the results of single
+     * connections.
+     */
+    public List<StreamLatency> streams() {
+        return streams;
+    }
+
+    /**
+     * @return the result of every client connection, empty for the result of a single connection.
+     */
+    public List<LatencyResult> connections() {
+        return connections;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        if (connections.size() > 1) {
+            for (int i = 0, size = connections.size(); i < size; i++) {
+                sb.append("connection ").append(i).append(' ').append(connections.get(i)).append('\n');
+            }
+            sb.append("all connections ");
+        }
+
+        sb.append("sent=").append(sent).append(", ");
+        sb.append(" received=").append(received).append(", ");
+        sb.append(" lost=").append(lost()).append(", ");
+        sb.append(" reordered=").append(reordered).append(", ");
+        sb.append(" msgs/sec=").append(String.format("%.2f", messagesPerSecond()));
+        if (allocatedBytes >= 0L) {
+            sb.append(", ");
+            sb.append(" allocated/msg=").append(String.format("%.2f", allocatedBytesPerMessage()));
+        }
+        if (serverAllocatedBytes >= 0L) {
+            sb.append(", ");
+            sb.append(" server allocated/msg=").append(String.format("%.2f", serverAllocatedBytesPerMessage()));
+        }
+        if (flushes >= 0L) {
+            sb.append(", ");
+            sb.append(" flushes/msg=").append(String.format("%.4f", flushesPerMessage()));
+        }
+        sb.append('\n');
+
+        if (clockCalibration != null) {
+            sb.append("clock ").append(clockCalibration).append('\n');
+        }
+
+        if (clientToServer != null) {
+            sb.append("client -> server ").append(clientToServer).append('\n');
+        }
+        sb.append("server -> client ").append(serverToClient).append('\n');
+        sb.append("round trip ").append(roundTrip);
+        for (StreamLatency stream : streams) {
+            sb.append('\n').append(stream);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Splits a stream into the frames {@link io.netty.handler.codec.LengthFieldPrepender} prefixed with their
+ * {@link NettyLatencyTest#LENGTH_FIELD_SIZE} byte length, and passes every frame on as a retained slice of the
+ * buffer it was read into, where {@link LengthFieldBasedFrameDecoder} of Netty 4.0.9 copies it into a new one.
+ *
+ * The slices of the in-place echo stay in the outbound buffer of the server until they are flushed, so the
+ * buffer they point into must not change under them. LengthFieldBasedFrameDecoder compacts its cumulation with
+ * discardSomeReadBytes() whenever a partial frame is left over, which would overwrite them. Here the partial
+ * frame left over by a read is copied into a buffer of its own, which takes the rest of the frame from the next
+ * reads and is passed on once complete. Only frames straddling reads are copied, the rest of every read is
+ * sliced.
+ */
+public class LengthFieldFrameDecoder extends ChannelInboundHandlerAdapter {
+    private final int maxFrameLength;
+    private ByteBuf cumulation;
+
+    /**
+     * @param maxFrameLength largest frame accepted, without the length field.
+     */
+    public LengthFieldFrameDecoder(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be positive");
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        ByteBuf in = (ByteBuf) msg;
+        try {
+            if (cumulation != null && !completeFrame(ctx, in)) {
+                return;
+            }
+
+            while (in.readableBytes() >= NettyLatencyTest.LENGTH_FIELD_SIZE) {
+                final int length = frameLength(in);
+                if (in.readableBytes() < NettyLatencyTest.LENGTH_FIELD_SIZE + length) {
+                    break;
+                }
+
+                in.skipBytes(NettyLatencyTest.LENGTH_FIELD_SIZE);
+                ByteBuf frame = in.slice(in.readerIndex(), length).retain();
+                in.skipBytes(length);
+                ctx.fireChannelRead(frame);
+            }
+
+            if (in.isReadable()) {
+                // sized for the whole frame once its length is known
+                final int frameSize = in.readableBytes() < NettyLatencyTest.LENGTH_FIELD_SIZE ?
+                        NettyLatencyTest.LENGTH_FIELD_SIZE : NettyLatencyTest.LENGTH_FIELD_SIZE + frameLength(in);
+                cumulation = ctx.alloc().buffer(frameSize);
+                cumulation.writeBytes(in);
+            }
+        } finally {
+            in.release();
+        }
+    }
+
+    /**
+     * Complete the frame left over by the previous reads with the bytes it misses from the start of a read, and
+     * pass it on once complete.
+     *
+     * @return false if the read ended before the frame did.
+     */
+    private boolean completeFrame(ChannelHandlerContext ctx, ByteBuf in) {
+        // the length field may straddle reads too
+        if (cumulation.readableBytes() < NettyLatencyTest.LENGTH_FIELD_SIZE) {
+            cumulation.writeBytes(in, Math.min(NettyLatencyTest.LENGTH_FIELD_SIZE - cumulation.readableBytes(),
+                    in.readableBytes()));
+            if (cumulation.readableBytes() < NettyLatencyTest.LENGTH_FIELD_SIZE) {
+                return false;
+            }
+        }
+
+        final int missing = NettyLatencyTest.LENGTH_FIELD_SIZE + frameLength(cumulation) - cumulation.readableBytes();
+        cumulation.writeBytes(in, Math.min(missing, in.readableBytes()));
+        if (cumulation.readableBytes() < NettyLatencyTest.LENGTH_FIELD_SIZE + frameLength(cumulation)) {
+            return false;
+        }
+
+        ByteBuf frame = cumulation.skipBytes(NettyLatencyTest.LENGTH_FIELD_SIZE);
+        cumulation = null;
+        ctx.fireChannelRead(frame);
+        return true;
+    }
+
+    private int frameLength(ByteBuf in) {
+        final int length = in.getInt(in.readerIndex());
+        if (length < 0) {
+            throw new CorruptedFrameException("negative frame length " + length);
+        }
+        if (length > maxFrameLength) {
+            throw new TooLongFrameException("frame length " + length + " exceeds " + maxFrameLength);
+        }
+        return length;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseCumulation();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseCumulation();
+    }
+
+    private void releaseCumulation() {
+        if (cumulation != null) {
+            cumulation.release();
+            cumulation = null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+
+import java.net.SocketAddress;
+
+/**
+ * In-JVM baseline: the echo frames are handed between the client and server event loops without any
+ * kernel involvement, so this only measures the pipeline and event loop handoff cost of Netty itself.
+ * Frames arrive as whole {@link io.netty.buffer.ByteBuf}s, no frame decoder is needed.
+ */
+public class LocalLatencyTest extends NettyLatencyTest {
+
+    public LocalLatencyTest(PerfConfig config) {
+        super(config);
+    }
+
+    @Override
+    public ServerBootstrap mkServerBootStrap() {
+        ServerBootstrap sb = new ServerBootstrap();
+        return sb.group(new LocalEventLoopGroup(config.serverBossThreads()),
+                new LocalEventLoopGroup(config.serverWorkerThreads())).
+                childHandler(new ChannelInitializer() {
+                    @Override
+                    public void initChannel(Channel ch) throws Exception {
+                        ch.pipeline().addLast(serverMeter());
+                    }
+                });
+    }
+
+    @Override
+    public Bootstrap mkClientBootStrap() {
+        Bootstrap cb = new Bootstrap();
+        return cb.group(new LocalEventLoopGroup(config.clientThreads())).
+                handler(new ChannelInitializer() {
+                    @Override
+                    public void initChannel(Channel ch) throws Exception {
+                        ch.pipeline().addLast(clientMeter());
+                    }
+                });
+    }
+
+    @Override
+    public SocketAddress serverAddress() {
+        return LocalAddress.ANY;
+    }
+
+    @Override
+    public Class<? extends Channel> clientChannel() {
+        return LocalChannel.class;
+    }
+
+    @Override
+    public Class<? extends ServerChannel> serverChannel() {
+        return LocalServerChannel.class;
+    }
+}
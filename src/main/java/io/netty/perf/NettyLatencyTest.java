@@ -15,53 +15,141 @@ package io.netty.perf;
  * under the License.
  */
 
+import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.perf.collection.Histogram;
+import io.netty.channel.nio.NioEventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.perf.collection.HistogramRecorder;
+import io.netty.perf.collection.IntervalHistogram;
+import io.netty.perf.collection.LogLinearHistogram;
+import io.netty.util.AttributeKey;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public abstract class NettyLatencyTest {
-    public final static int ECHO_FRAME_SIZE = 8;
+    /**
+     * Echo frame: the client sequence number and send time, echoed back untouched, followed by the server
+     * receive time, padded with zeros up to {@link PerfConfig#frameSize()}.
+     */
+    public final static int ECHO_FRAME_SIZE = 24;
+    /**
+     * Size of the length prefix stream oriented transports put in front of every frame.
+     */
+    public final static int LENGTH_FIELD_SIZE = 4;
     public final static int LAST_PING = 0xBABE;
+    public final static int WRITE_BATCH = 64;
+    private final static AttributeKey<Flusher> FLUSHER = new AttributeKey<Flusher>("flusher");
+    private final static AttributeKey<BusySpinner> SPINNER = new AttributeKey<BusySpinner>("spinner");
 
-    private final Histogram currentHistogram;
+    protected final PerfConfig config;
+    private final HistogramRecorder clientToServer;
+    private HistogramRecorder[] clientToServerByStream;
 
-    protected final LatencyClientMeter clientMeter = new LatencyClientMeter();
-    protected final LatencyServerMeter serverMeter = new LatencyServerMeter();
+    private final LatencyServerMeter serverMeter = new LatencyServerMeter();
+    private final List<LatencyClientMeter> clientMeters = new ArrayList<LatencyClientMeter>();
+    private final List<Flusher> serverFlushers = new CopyOnWriteArrayList<Flusher>();
+    private final Set<Long> serverThreads = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final Map<EventLoop, BusySpinner> spinners = new ConcurrentHashMap<EventLoop, BusySpinner>();
+    private boolean spinnersChecked;
 
 
-    private ServerBootstrap sb;
+    private AbstractBootstrap<?, ?> sb;
     private Bootstrap cb;
-    private final CountDownLatch latch = new CountDownLatch(2);
-
-    public NettyLatencyTest(long[] latencyIntervals) {
-        currentHistogram = new Histogram(latencyIntervals);
+    private volatile CountDownLatch latch;
+    private Clock clock;
+    private ClockCalibration clockCalibration;
+    private volatile long clockCorrection;
+    private long runStartTime;
+    private AllocationCounter allocationCounter;
+    private IntervalReporter intervalReporter;
+
+    public NettyLatencyTest(PerfConfig config) {
+        this.config = config;
+        clientToServer = new HistogramRecorder(config.highestTrackableLatency(), config.significantDigits());
     }
 
+    /**
+     * Bind the server and open {@link PerfConfig#connections()} client connections to it. The
+     * {@link PerfConfig#allocator()} and the {@link PerfConfig#options()} are applied on top of the options set
+     * by the bootstraps.
+     */
+    @SuppressWarnings("unchecked")
     public void setup() {
+        clock = clock();
+        clientToServerByStream = new HistogramRecorder[streams()];
+        for (int i = 0; i < clientToServerByStream.length; i++) {
+            clientToServerByStream[i] = new HistogramRecorder(config.highestTrackableLatency(),
+                    config.significantDigits());
+        }
 
         sb = mkServerBootStrap();
 
         cb = mkClientBootStrap();
 
-        Channel sc = sb.
+        if (config.polling() == PerfConfig.Polling.BUSY_SPIN && !(cb.group() instanceof NioEventLoopGroup)) {
+            System.out.println(getClass().getSimpleName() + " does not run on NIO event loops, " +
+                    "busy-spin has no effect");
+        }
+
+        ByteBufAllocator allocator = config.allocator().newAllocator(config);
+        if (allocator != null) {
+            ((AbstractBootstrap) sb).option(ChannelOption.ALLOCATOR, allocator);
+            if (sb instanceof ServerBootstrap) {
+                ((ServerBootstrap) sb).childOption(ChannelOption.ALLOCATOR, allocator);
+            }
+            cb.option(ChannelOption.ALLOCATOR, allocator);
+        }
+
+        for (Map.Entry<ChannelOption<?>, Object> option : config.options().entrySet()) {
+            ((AbstractBootstrap) sb).option(option.getKey(), option.getValue());
+            if (sb instanceof ServerBootstrap) {
+                ((ServerBootstrap) sb).childOption((ChannelOption) option.getKey(), option.getValue());
+            }
+            cb.option((ChannelOption) option.getKey(), option.getValue());
+        }
+
+        Channel sc = ((AbstractBootstrap) sb).
                 channel(serverChannel()).
-                localAddress(new InetSocketAddress("127.0.0.1", 0)).
+                localAddress(serverAddress()).
                 bind().syncUninterruptibly().channel();
 
-        int port = ((InetSocketAddress) sc.localAddress()).getPort();
+        cb.channel(clientChannel()).remoteAddress(sc.localAddress());
 
-        cb.channel(clientChannel()).
-                remoteAddress(new InetSocketAddress("127.0.0.1", port)).
-                connect().syncUninterruptibly();
+        for (int i = 0; i < config.connections(); i++) {
+            Channel channel = cb.connect().syncUninterruptibly().channel();
+            LatencyClientMeter meter = channel.pipeline().get(LatencyClientMeter.class);
+            // channelActive may fire after the connect future completes, so take the channel from the future
+            meter.channel = channel;
+            clientMeters.add(meter);
+        }
+    }
+
+    /**
+     * @return the address the server channel binds to, an ephemeral loopback port by default.
+     */
+    public SocketAddress serverAddress() {
+        return new InetSocketAddress("127.0.0.1", 0);
     }
 
-    public abstract ServerBootstrap mkServerBootStrap();
+    /**
+     * @return a {@link ServerBootstrap} for connection oriented transports, or a {@link Bootstrap} bound as
+     * the server side of connectionless ones.
+     */
+    public abstract AbstractBootstrap<?, ?> mkServerBootStrap();
 
     public abstract Bootstrap mkClientBootStrap();
 
@@ -69,23 +157,306 @@ public abstract class NettyLatencyTest {
     public abstract Class<? extends Channel> clientChannel();
 
 
-    public abstract Class<? extends ServerChannel> serverChannel();
+    /**
+     * @return a {@link ServerChannel} for connection oriented transports, or the channel bound as the server
+     * side of connectionless ones.
+     */
+    public abstract Class<? extends Channel> serverChannel();
+
+    /**
+     * @return number of streams the latencies are recorded for one by one besides the aggregate, 0 for
+     * transports without streams.
+     */
+    protected int streams() {
+        return 0;
+    }
+
+    /**
+     * @param ctx context of a meter, during the read of a message.
+     * @return the stream the message being read arrived on, from 0 to {@link #streams()} - 1, or -1 if unknown.
+     */
+    protected int streamIdentifier(ChannelHandlerContext ctx) {
+        return -1;
+    }
+
+    /**
+     * @return the clock the frames are stamped with and the latencies measured with,
+     * {@link PerfConfig#clockSource()} by default. Override it to measure with a clock of your own, e.g. one
+     * reading the time stamp counter.
+     */
+    protected Clock clock() {
+        return config.clockSource();
+    }
+
+    /**
+     * @return the meter echoing frames back, to be added last to the pipeline of every server channel. It is
+     * shared by all of them.
+     */
+    protected ChannelHandler serverMeter() {
+        return serverMeter;
+    }
 
-    public Histogram execute(int count) throws InterruptedException {
-        ByteBufAllocator bufAllocator = clientMeter.channel.alloc();
+    /**
+     * @return a new meter measuring the echoes, to be added last to the pipeline of every client channel.
+     */
+    protected ChannelHandler clientMeter() {
+        return new LatencyClientMeter();
+    }
+
+    /**
+     * Send count frames on every connection in a tight loop, flushing once at the end.
+     *
+     * @param count number of messages to send per connection.
+     * @return the latencies of all connections.
+     */
+    public LatencyResult execute(int count) throws InterruptedException {
+        startRun();
+        ByteBufAllocator bufAllocator = clientMeters.get(0).channel.alloc();
 
         for (int i = 0; i < count; i++) {
-            ByteBuf buffer = bufAllocator.ioBuffer(ECHO_FRAME_SIZE);
-            buffer.writeLong(System.nanoTime());
-            clientMeter.write(buffer);
+            for (LatencyClientMeter meter : clientMeters) {
+                meter.write(frame(bufAllocator, i, clock.nanoTime(), 0L));
+            }
+        }
+
+        for (LatencyClientMeter meter : clientMeters) {
+            meter.flusher.batchComplete();
+            sendLastPing(meter);
+        }
+
+        awaitCompletion();
+        return result(count);
+    }
+
+    /**
+     * Send echo frames open loop, on a fixed schedule driven by the client event loop, so that a stall in
+     * the transport does not hold back the following messages. Every frame is stamped with the time it was
+     * meant to be sent rather than the time it was actually written, which corrects the recorded latencies
+     * for coordinated omission: a message that could not go out on time is charged for its wait.
+     *
+     * @param count             number of messages to send per connection.
+     * @param messagesPerSecond fixed rate at which messages are sent on every connection.
+     * @return the latencies, client to server and round trip measured from the intended send times.
+     */
+    public LatencyResult executeFixedRate(int count, int messagesPerSecond) throws InterruptedException {
+        if (messagesPerSecond <= 0 || messagesPerSecond > TimeUnit.SECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("messagesPerSecond must be between 1 and 1000000000");
+        }
+        startRun();
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / messagesPerSecond;
+        for (LatencyClientMeter meter : clientMeters) {
+            meter.channel.eventLoop().execute(new FixedRateDriver(meter, count, interval));
+        }
+
+        awaitCompletion();
+        return result(count);
+    }
+
+    /**
+     * Send echo frames as fast as the client channels accept them for the given window and measure the
+     * echoes the client gets back. Writes are driven from the client event loops and pause while a
+     * channel is not writable, so the outbound buffers never grow beyond the high water mark.
+     *
+     * @param duration of the sending window.
+     * @param unit     of the duration.
+     * @return the sustained echo throughput observed by the client, over all connections.
+     */
+    public Throughput executeThroughput(long duration, TimeUnit unit) throws InterruptedException {
+        startRun();
+        for (LatencyClientMeter meter : clientMeters) {
+            meter.driver = new ThroughputDriver(meter, unit.toNanos(duration));
+            meter.channel.eventLoop().execute(meter.driver);
+        }
+
+        awaitCompletion();
+
+        long received = 0L;
+        long receivedBytes = 0L;
+        for (LatencyClientMeter meter : clientMeters) {
+            received += meter.received;
+            receivedBytes += meter.receivedBytes;
+        }
+        return new Throughput(received, receivedBytes, lastReceivedTime() - runStartTime,
+                allocationCounter.allocatedBytes(), allocationCounter.allocatedBytes(serverThreads), flushes());
+    }
+
+    private ByteBuf frame(ByteBufAllocator bufAllocator, long sequence, long sendTime, long serverTime) {
+        final int frameSize = config.frameSize();
+        ByteBuf buffer = bufAllocator.ioBuffer(frameSize);
+        buffer.writeLong(sequence);
+        buffer.writeLong(sendTime);
+        buffer.writeLong(serverTime);
+        buffer.writeZero(frameSize - ECHO_FRAME_SIZE);
+        return buffer;
+    }
+
+    private void startRun() {
+        // by the first run the server has registered the accepted connections with their event loops too
+        final int cores = Runtime.getRuntime().availableProcessors();
+        if (!spinnersChecked && spinners.size() >= cores) {
+            System.out.println(spinners.size() + " event loops busy spin on " + cores + " cores and compete for them " +
+                    "with each other and the sending thread, lower clientThreads, serverWorkerThreads or connections");
+        }
+        spinnersChecked = true;
+
+        latch = new CountDownLatch(2 * clientMeters.size());
+        clientToServer.clear();
+        for (HistogramRecorder recorder : clientToServerByStream) {
+            recorder.clear();
+        }
+        for (LatencyClientMeter meter : clientMeters) {
+            meter.startRun();
+        }
+        for (Flusher flusher : serverFlushers) {
+            flusher.resetFlushes();
+        }
+        // before the allocation counter, reading some clocks allocates
+        clockCalibration = ClockCalibration.calibrate(clock);
+        clockCorrection = config.subtractClockOverhead() ? Math.round(clockCalibration.overheadNanos()) : 0L;
+        allocationCounter = new AllocationCounter();
+        runStartTime = clock.nanoTime();
+
+        if (config.reportIntervalMillis() > 0L) {
+            List<IntervalHistogram> histograms = new ArrayList<IntervalHistogram>(clientMeters.size());
+            for (LatencyClientMeter meter : clientMeters) {
+                histograms.add(meter.intervalRoundTrip);
+            }
+            intervalReporter = new IntervalReporter(histograms, config, clock, runStartTime);
+            intervalReporter.start();
+        }
+    }
+
+    /**
+     * Wait for the last pings to come back. Connectionless transports may lose them, so give up once all last
+     * pings have been written and no echo has been received for the configured idle timeout.
+     */
+    private void awaitCompletion() throws InterruptedException {
+        try {
+            awaitLastPings();
+        } finally {
+            if (intervalReporter != null) {
+                intervalReporter.stop();
+                intervalReporter = null;
+            }
+        }
+    }
+
+    private void awaitLastPings() throws InterruptedException {
+        final long idleTimeout = TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMillis());
+
+        while (!latch.await(100L, TimeUnit.MILLISECONDS)) {
+            long lastReadTime = Long.MIN_VALUE;
+            boolean lastPingsWritten = true;
+            for (LatencyClientMeter meter : clientMeters) {
+                lastReadTime = Math.max(lastReadTime, meter.lastReadTime);
+                lastPingsWritten &= meter.lastPingWritten;
+            }
+
+            if (lastPingsWritten && clock.nanoTime() - lastReadTime > idleTimeout) {
+                System.out.println("No echo received for " + config.idleTimeoutMillis() + "ms, last ping lost");
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return flushes of the client send paths and the echoing server since the start of the run.
+     */
+    private long flushes() {
+        long flushes = 0L;
+        for (LatencyClientMeter meter : clientMeters) {
+            flushes += meter.flusher.flushes();
+        }
+        for (Flusher flusher : serverFlushers) {
+            flushes += flusher.flushes();
+        }
+        return flushes;
+    }
+
+    private long lastReceivedTime() {
+        long lastReceivedTime = runStartTime;
+        for (LatencyClientMeter meter : clientMeters) {
+            if (meter.lastReceivedTime - lastReceivedTime > 0L) {
+                lastReceivedTime = meter.lastReceivedTime;
+            }
+        }
+        return lastReceivedTime;
+    }
+
+    private LatencyResult result(long sentPerConnection) {
+        LogLinearHistogram serverToClient = newHistogram();
+        LogLinearHistogram roundTrip = newHistogram();
+        long received = 0L;
+        long reordered = 0L;
+        List<LatencyResult> connections = new ArrayList<LatencyResult>(clientMeters.size());
+        List<StreamLatency> streams = new ArrayList<StreamLatency>(clientToServerByStream.length);
+        for (int i = 0; i < clientToServerByStream.length; i++) {
+            streams.add(new StreamLatency(i, clientToServerByStream[i].snapshot(), newHistogram()));
+        }
+
+        for (LatencyClientMeter meter : clientMeters) {
+            LatencyResult connection = meter.result(sentPerConnection, runStartTime);
+            serverToClient.addObservations(connection.serverToClient());
+            roundTrip.addObservations(connection.roundTrip());
+            received += connection.received();
+            reordered += connection.reordered();
+            connections.add(connection);
+            for (int i = 0; i < meter.roundTripByStream.length; i++) {
+                streams.get(i).roundTrip().addObservations(meter.roundTripByStream[i]);
+            }
         }
 
-        ByteBuf last = bufAllocator.ioBuffer(ECHO_FRAME_SIZE);
-        last.writeLong(LAST_PING);
+        return new LatencyResult(clientToServer.snapshot(), serverToClient, roundTrip,
+                sentPerConnection * clientMeters.size(), received, reordered, lastReceivedTime() - runStartTime,
+                allocationCounter.allocatedBytes(), allocationCounter.allocatedBytes(serverThreads), flushes(),
+                clockCalibration, streams, connections);
+    }
+
+    private LogLinearHistogram newHistogram() {
+        return new LogLinearHistogram(config.highestTrackableLatency(), config.significantDigits());
+    }
+
+    /**
+     * @return the spinner of the event loop serving the channel, spinning from the first channel on, or null
+     * unless {@link PerfConfig.Polling#BUSY_SPIN} and the loop is a {@link NioEventLoop}. Must be called on the
+     * event loop.
+     */
+    private BusySpinner spinner(Channel channel) {
+        EventLoop eventLoop = channel.eventLoop();
+        if (config.polling() != PerfConfig.Polling.BUSY_SPIN || !(eventLoop instanceof NioEventLoop)) {
+            return null;
+        }
+
+        // every loop only ever looks up its own spinner
+        BusySpinner spinner = spinners.get(eventLoop);
+        if (spinner == null) {
+            spinner = new BusySpinner(eventLoop, TimeUnit.MICROSECONDS.toNanos(config.spinParkMicros()));
+            spinners.put(eventLoop, spinner);
+            spinner.spin();
+        }
+        return spinner;
+    }
+
+    /**
+     * @return nano secs from one clock reading to a later one, less the cost of a reading if
+     * {@link PerfConfig#subtractClockOverhead()}. A latency below that cost is recorded as 0, a negative one, e.g.
+     * across a step of the realtime clock, is left for the histograms to reject.
+     */
+    private long latency(long from, long to) {
+        final long latency = to - from;
+        return latency > clockCorrection ? latency - clockCorrection : Math.min(latency, 0L);
+    }
 
-        clientMeter.writeAndFlush(last).addListener(new ChannelFutureListener() {
+    private ChannelFuture sendLastPing(final LatencyClientMeter meter) {
+        ByteBuf last = frame(meter.channel.alloc(), -1L, LAST_PING, 0L);
+
+        return meter.writeAndFlush(last).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
+                // a long backlog of writes must not count as idle time
+                meter.lastReadTime = clock.nanoTime();
+                meter.lastPingWritten = true;
                 if (future.isSuccess()) {
                     System.out.println("Sent all messages from client");
                 } else {
@@ -97,49 +468,87 @@ public abstract class NettyLatencyTest {
                 }
             }
         });
-
-        latch.await();
-        return currentHistogram;
     }
 
     void tearDown() {
         cb.group().shutdownGracefully();
         sb.group().shutdownGracefully();
+        if (sb instanceof ServerBootstrap) {
+            ((ServerBootstrap) sb).childGroup().shutdownGracefully();
+        }
     }
 
+    /**
+     * Echoes every frame back with the server time filled in. With {@link PerfConfig.Echo#IN_PLACE} the
+     * inbound buffer itself is rewritten and handed over to the write, which releases it once flushed, so no
+     * buffer is allocated per message. Every server channel flushes its echoes with a {@link Flusher} of its
+     * own, kept in a channel attribute.
+     */
+    @ChannelHandler.Sharable
     private class LatencyServerMeter extends ChannelInboundHandlerAdapter {
-        Channel channel;
 
         LatencyServerMeter() {
         }
 
         @Override
-        public void channelActive(ChannelHandlerContext ctx) throws Exception {
-            channel = ctx.channel();
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            Flusher flusher = config.flushStrategy().newFlusher(ctx, config);
+            ctx.attr(FLUSHER).set(flusher);
+            serverFlushers.add(flusher);
+            // added by the initializer of the channel, on the event loop serving it
+            serverThreads.add(Thread.currentThread().getId());
+            ctx.attr(SPINNER).set(spinner(ctx.channel()));
         }
 
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+            Flusher flusher = ctx.attr(FLUSHER).get();
+            flusher.close();
+            serverFlushers.remove(flusher);
+        }
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-            ByteBuf byteBuf = (ByteBuf) msg;
-            final long in = byteBuf.readLong();
+            BusySpinner spinner = ctx.attr(SPINNER).get();
+            if (spinner != null) {
+                spinner.read();
+            }
 
-            if (in != LAST_PING) {
-                currentHistogram.addObservation(System.nanoTime() - in);
-                ByteBuf ack = ctx.alloc().ioBuffer(ECHO_FRAME_SIZE);
-                ack.writeLong(System.nanoTime());
-                channel.write(ack);
+            ByteBuf byteBuf = (ByteBuf) msg;
+            final int index = byteBuf.readerIndex();
+            final long sequence = byteBuf.getLong(index);
+            final long sendTime = byteBuf.getLong(index + 8);
+            long serverTime = 0L;
+
+            if (sendTime != LAST_PING) {
+                final long now = clock.nanoTime();
+                final long latency = latency(sendTime, now);
+                clientToServer.record(latency);
+                final int stream = streamIdentifier(ctx);
+                if (stream >= 0 && stream < clientToServerByStream.length) {
+                    clientToServerByStream[stream].record(latency);
+                }
+                serverTime = clock.nanoTime();
             } else {
-                ByteBuf ping = ctx.alloc().ioBuffer(ECHO_FRAME_SIZE);
-                ping.writeLong(LAST_PING);
-                channel.write(ping);
                 latch.countDown();
             }
+
+            if (config.echo() == PerfConfig.Echo.IN_PLACE) {
+                byteBuf.setLong(index + 16, serverTime);
+                ctx.write(byteBuf, ctx.voidPromise());
+            } else {
+                try {
+                    ctx.write(frame(ctx.alloc(), sequence, sendTime, serverTime), ctx.voidPromise());
+                } finally {
+                    byteBuf.release();
+                }
+            }
+            ctx.attr(FLUSHER).get().written();
         }
 
         @Override
         public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-            ctx.flush();
+            ctx.attr(FLUSHER).get().batchComplete();
         }
 
         @Override
@@ -149,16 +558,164 @@ public abstract class NettyLatencyTest {
         }
     }
 
+    private final class ThroughputDriver implements Runnable {
+        private final LatencyClientMeter meter;
+        private final long window;
+        private long startTime;
+        private long deadline;
+        private long sent;
+        private boolean finished;
+
+        ThroughputDriver(LatencyClientMeter meter, long window) {
+            this.meter = meter;
+            this.window = window;
+        }
+
+        @Override
+        public void run() {
+            if (finished) {
+                return;
+            }
+
+            Channel channel = meter.channel;
+            ByteBufAllocator bufAllocator = channel.alloc();
+
+            if (startTime == 0L) {
+                startTime = clock.nanoTime();
+                deadline = startTime + window;
+            }
+
+            for (int i = 0; i < WRITE_BATCH && channel.isWritable(); i++) {
+                meter.write(frame(bufAllocator, sent++, clock.nanoTime(), 0L));
+            }
+            meter.flusher.batchComplete();
+
+            if (clock.nanoTime() - deadline >= 0L) {
+                finished = true;
+                sendLastPing(meter);
+            } else if (channel.isWritable()) {
+                channel.eventLoop().execute(this);
+            }
+            // otherwise resumed by LatencyClientMeter.channelWritabilityChanged
+        }
+    }
+
+    private final class FixedRateDriver implements Runnable {
+        private final LatencyClientMeter meter;
+        private final int count;
+        private final long interval;
+        private long startTime;
+        private int sent;
+
+        FixedRateDriver(LatencyClientMeter meter, int count, long interval) {
+            this.meter = meter;
+            this.count = count;
+            this.interval = interval;
+        }
+
+        @Override
+        public void run() {
+            Channel channel = meter.channel;
+            ByteBufAllocator bufAllocator = channel.alloc();
+            final long now = clock.nanoTime();
+
+            if (sent == 0) {
+                startTime = now;
+            }
+
+            // catch up on every message whose send time has passed, the scheduler only wakes up in millis
+            long intended = startTime + sent * interval;
+            while (sent < count && intended - now <= 0L) {
+                meter.write(frame(bufAllocator, sent, intended, 0L));
+                sent++;
+                intended += interval;
+            }
+            meter.flusher.batchComplete();
+
+            if (sent < count) {
+                channel.eventLoop().schedule(this, intended - now, TimeUnit.NANOSECONDS);
+            } else {
+                sendLastPing(meter);
+            }
+        }
+    }
+
+    /**
+     * Measures the echoes of one client connection. It is only ever touched by the event loop of its
+     * channel, so it records into plain histograms of its own.
+     */
     private class LatencyClientMeter extends ChannelInboundHandlerAdapter {
         Channel channel;
+        Flusher flusher;
+        private BusySpinner spinner;
+
+        private final LogLinearHistogram serverToClient = newHistogram();
+        private final LogLinearHistogram roundTrip = newHistogram();
+        private final LogLinearHistogram[] roundTripByStream = new LogLinearHistogram[streams()];
+        private final IntervalHistogram intervalRoundTrip = config.reportIntervalMillis() > 0L ?
+                new IntervalHistogram(config.highestTrackableLatency(), config.significantDigits()) : null;
+        ThroughputDriver driver;
+        private long highestSequence;
+        long received;
+        long receivedBytes;
+        long reordered;
+        long lastReceivedTime;
+        volatile long lastReadTime;
+        volatile boolean lastPingWritten;
+
+        void startRun() {
+            driver = null;
+            serverToClient.clear();
+            roundTrip.clear();
+            for (LogLinearHistogram histogram : roundTripByStream) {
+                histogram.clear();
+            }
+            highestSequence = -1L;
+            received = 0L;
+            receivedBytes = 0L;
+            reordered = 0L;
+            lastReceivedTime = 0L;
+            lastReadTime = clock.nanoTime();
+            lastPingWritten = false;
+            flusher.resetFlushes();
+        }
+
+        LatencyResult result(long sent, long runStartTime) {
+            LogLinearHistogram serverToClientCopy = newHistogram();
+            serverToClientCopy.addObservations(serverToClient);
+            LogLinearHistogram roundTripCopy = newHistogram();
+            roundTripCopy.addObservations(roundTrip);
+
+            return new LatencyResult(null, serverToClientCopy, roundTripCopy, sent, received, reordered,
+                    Math.max(0L, lastReceivedTime - runStartTime), -1L, -1L, -1L, null,
+                    new ArrayList<StreamLatency>(0), new ArrayList<LatencyResult>(0));
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            flusher = config.flushStrategy().newFlusher(ctx, config);
+            spinner = spinner(ctx.channel());
+            for (int i = 0; i < roundTripByStream.length; i++) {
+                roundTripByStream[i] = newHistogram();
+            }
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+            flusher.close();
+        }
 
         @Override
         public void channelActive(ChannelHandlerContext ctx) throws Exception {
             channel = ctx.channel();
         }
 
+        /**
+         * Write a frame, flushed according to the {@link PerfConfig#flushStrategy()}.
+         */
         public void write(ByteBuf buf) {
             channel.write(buf);
+            flusher.written();
         }
 
         public ChannelFuture writeAndFlush(ByteBuf buf) {
@@ -167,19 +724,55 @@ public abstract class NettyLatencyTest {
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (spinner != null) {
+                spinner.read();
+            }
+
             ByteBuf buffer = (ByteBuf) msg;
-            final long in = buffer.readLong();
+            final int size = buffer.readableBytes();
+            final long sequence = buffer.readLong();
+            final long sendTime = buffer.readLong();
+            final long serverTime = buffer.readLong();
+            buffer.release();
+
+            if (sendTime != LAST_PING) {
+                final long now = clock.nanoTime();
+                final long latency = latency(sendTime, now);
+                serverToClient.addObservation(latency(serverTime, now));
+                roundTrip.addObservation(latency);
+                if (intervalRoundTrip != null) {
+                    intervalRoundTrip.addObservation(latency);
+                }
+                final int stream = streamIdentifier(ctx);
+                if (stream >= 0 && stream < roundTripByStream.length) {
+                    roundTripByStream[stream].addObservation(latency);
+                }
+                received++;
+                receivedBytes += size;
+                lastReceivedTime = now;
 
-            if (in != LAST_PING) {
-                currentHistogram.addObservation(System.nanoTime() - in);
+                if (sequence < highestSequence) {
+                    reordered++;
+                } else {
+                    highestSequence = sequence;
+                }
             } else {
+                lastReceivedTime = clock.nanoTime();
                 latch.countDown();
             }
         }
 
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (driver != null && ctx.channel().isWritable()) {
+                driver.run();
+            }
+            ctx.fireChannelWritabilityChanged();
+        }
+
         @Override
         public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-            ctx.flush();
+            lastReadTime = clock.nanoTime();
         }
 
         @Override
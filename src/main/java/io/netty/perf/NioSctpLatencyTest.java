@@ -19,12 +19,11 @@ import com.sun.nio.sctp.SctpStandardSocketOptions;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ServerChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.sctp.SctpChannelOption;
-import io.netty.channel.sctp.nio.NioSctpChannel;
-import io.netty.channel.sctp.nio.NioSctpServerChannel;
 import io.netty.handler.codec.sctp.SctpInboundStreamingHandler;
 import io.netty.handler.codec.sctp.SctpOutboundStreamingHandler;
 
@@ -38,23 +37,63 @@ public class NioSctpLatencyTest extends NettyLatencyTest {
 
     final static InitMaxStreams initMaxStreams = InitMaxStreams.create(MAX_INBOUND_STREAMS, MAX_OUTBOUND_STREAMS);
 
+    private final int streams;
 
-    public NioSctpLatencyTest(long[] latencyIntervals) {
-        super(latencyIntervals);
+    public NioSctpLatencyTest(PerfConfig config) {
+        super(config);
+        streams = streams(config);
+    }
+
+    /**
+     * @param config of the run.
+     * @return streams the messages are sent on, the fewer of the inbound and outbound streams of the
+     * SCTP_INIT_MAXSTREAMS both sides ask for, {@link #initMaxStreams} unless {@link PerfConfig#options()} sets it.
+     */
+    static int streams(PerfConfig config) {
+        InitMaxStreams maxStreams = (InitMaxStreams) config.options().get(SctpChannelOption.SCTP_INIT_MAXSTREAMS);
+        if (maxStreams == null) {
+            maxStreams = initMaxStreams;
+        }
+        final int streams = Math.min(maxStreams.maxInStreams(), maxStreams.maxOutStreams());
+        if (streams <= 0) {
+            throw new IllegalArgumentException("SCTP_INIT_MAXSTREAMS must ask for at least one stream each way, " +
+                    "not the system default");
+        }
+        return streams;
+    }
+
+    @Override
+    protected int streams() {
+        return streams;
+    }
+
+    @Override
+    protected int streamIdentifier(ChannelHandlerContext ctx) {
+        Integer streamIdentifier = ctx.channel().attr(SctpInboundStreamingHandler.STREAM_IDENTIFIER).get();
+        return streamIdentifier == null ? -1 : streamIdentifier;
+    }
+
+    /**
+     * The highest {@link PerfConfig#sctpUnorderedStreams()} streams are sent unordered.
+     */
+    SctpOutboundStreamingHandler outboundStreamingHandler() {
+        return new SctpOutboundStreamingHandler(PROTOCOL_ID, 0, streams - 1,
+                config.sctpStreamSelection().newSelector(config), streams - config.sctpUnorderedStreams(), streams - 1);
     }
 
     @Override
     public ServerBootstrap mkServerBootStrap() {
         ServerBootstrap sb = new ServerBootstrap();
 
-        return sb.group(new NioEventLoopGroup(), new NioEventLoopGroup())
+        return sb.group(new NioEventLoopGroup(config.serverBossThreads()),
+                new NioEventLoopGroup(config.serverWorkerThreads()))
                 .childHandler(new ChannelInitializer() {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(new SctpOutboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(serverMeter);
+                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, streams - 1)).
+                                addLast(outboundStreamingHandler()).
+                                addLast(serverMeter());
                     }
                 }).
                 option(SctpChannelOption.SCTP_INIT_MAXSTREAMS, initMaxStreams).
@@ -67,14 +106,14 @@ public class NioSctpLatencyTest extends NettyLatencyTest {
     public Bootstrap mkClientBootStrap() {
         Bootstrap cb = new Bootstrap();
 
-        return cb.group(new NioEventLoopGroup()).
+        return cb.group(new NioEventLoopGroup(config.clientThreads())).
                 handler(new ChannelInitializer() {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(new SctpOutboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(clientMeter);
+                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, streams - 1)).
+                                addLast(outboundStreamingHandler()).
+                                addLast(clientMeter());
                     }
                 }).
                 option(SctpChannelOption.SCTP_NODELAY, true).
@@ -83,14 +122,17 @@ public class NioSctpLatencyTest extends NettyLatencyTest {
                 option(SctpChannelOption.SO_SNDBUF, 1024 * 1024 * 1024);
     }
 
+    /**
+     * Netty's NioSctpChannel does not pass the unordered flag of outbound messages on, the subclass does.
+     */
     @Override
     public Class<? extends Channel> clientChannel() {
-        return NioSctpChannel.class;
+        return UnorderedNioSctpChannel.class;
     }
 
     @Override
     public Class<? extends ServerChannel> serverChannel() {
-        return NioSctpServerChannel.class;
+        return UnorderedNioSctpServerChannel.class;
     }
 
 }
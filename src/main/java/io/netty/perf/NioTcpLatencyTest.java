@@ -24,24 +24,26 @@ import io.netty.channel.ServerChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.FixedLengthFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
 
 public class NioTcpLatencyTest extends NettyLatencyTest {
 
-    public NioTcpLatencyTest(long[] latencyIntervals) {
-        super(latencyIntervals);
+    public NioTcpLatencyTest(PerfConfig config) {
+        super(config);
     }
 
     @Override
     public ServerBootstrap mkServerBootStrap() {
         ServerBootstrap sb = new ServerBootstrap();
-        return sb.group(new NioEventLoopGroup(), new NioEventLoopGroup()).
+        return sb.group(new NioEventLoopGroup(config.serverBossThreads()),
+                new NioEventLoopGroup(config.serverWorkerThreads())).
                 childHandler(new ChannelInitializer() {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new FixedLengthFrameDecoder(ECHO_FRAME_SIZE)).
-                                addLast(serverMeter);
+                                addLast(new LengthFieldFrameDecoder(config.frameSize())).
+                                addLast(new LengthFieldPrepender(LENGTH_FIELD_SIZE)).
+                                addLast(serverMeter());
                     }
                 }).option(ChannelOption.TCP_NODELAY, true);
     }
@@ -49,13 +51,14 @@ public class NioTcpLatencyTest extends NettyLatencyTest {
     @Override
     public Bootstrap mkClientBootStrap() {
         Bootstrap cb = new Bootstrap();
-        return cb.group(new NioEventLoopGroup()).
+        return cb.group(new NioEventLoopGroup(config.clientThreads())).
                 handler(new ChannelInitializer() {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new FixedLengthFrameDecoder(ECHO_FRAME_SIZE)).
-                                addLast(clientMeter);
+                                addLast(new LengthFieldFrameDecoder(config.frameSize())).
+                                addLast(new LengthFieldPrepender(LENGTH_FIELD_SIZE)).
+                                addLast(clientMeter());
                     }
                 }).option(ChannelOption.TCP_NODELAY, true).
                 option(ChannelOption.SO_RCVBUF, 1024 * 1024 * 1024).
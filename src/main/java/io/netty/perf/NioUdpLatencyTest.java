@@ -0,0 +1,149 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * UDP over loopback. The server side is a datagram channel bound by a plain {@link Bootstrap}, the client
+ * connects its datagram channel to it. Datagrams keep the frame boundaries, but may be dropped or
+ * reordered, see {@link LatencyResult#lost()} and {@link LatencyResult#reordered()}. Frames must fit in a
+ * single datagram, i.e. {@link PerfConfig#frameSize()} must not exceed {@link #MAX_FRAME_SIZE}.
+ *
+ * The datagrams are read into heap or direct buffers as {@link PerfConfig#allocator()} says, the default
+ * allocator picks its {@link io.netty.buffer.ByteBufAllocator#ioBuffer() ioBuffer()}. {@link NioDatagramChannel}
+ * of Netty 4.0.9 sets a wrong writer index when it reads into a pooled buffer, so with a pooled allocator they
+ * are read into unpooled buffers of the same kind, and only the frames written come from the pool. Without
+ * sun.misc.Unsafe the unpooled direct buffers of 4.0.9 return an empty NIO buffer to read into, so there the
+ * datagrams are read into heap buffers whatever the allocator.
+ */
+public class NioUdpLatencyTest extends NettyLatencyTest {
+    /**
+     * Largest UDP payload over IPv4, 65535 bytes less the IP and UDP headers.
+     */
+    public final static int MAX_FRAME_SIZE = 65507;
+
+    public NioUdpLatencyTest(PerfConfig config) {
+        super(config);
+        if (config.frameSize() > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("frameSize " + config.frameSize() + " does not fit in a datagram, " +
+                    "it must not exceed " + MAX_FRAME_SIZE + " for " + config.transport().id());
+        }
+        if (config.allocator().isDirect() && !PlatformDependent.hasUnsafe()) {
+            System.out.println("No sun.misc.Unsafe, datagrams are read into heap buffers instead of " +
+                    config.allocator().id() + " ones");
+        }
+    }
+
+    @Override
+    public Bootstrap mkServerBootStrap() {
+        Bootstrap sb = new Bootstrap();
+        return sb.group(new NioEventLoopGroup()).
+                handler(new ChannelInitializer() {
+                    @Override
+                    public void initChannel(Channel ch) throws Exception {
+                        ch.pipeline().
+                                addLast(new DatagramFrameCodec()).
+                                addLast(serverMeter());
+                    }
+                }).
+                option(ChannelOption.RCVBUF_ALLOCATOR,
+                        new DatagramRecvByteBufAllocator(config.frameSize(), config.allocator())).
+                option(ChannelOption.SO_RCVBUF, 1024 * 1024 * 1024).
+                option(ChannelOption.SO_SNDBUF, 1024 * 1024 * 1024);
+    }
+
+    @Override
+    public Bootstrap mkClientBootStrap() {
+        Bootstrap cb = new Bootstrap();
+        return cb.group(new NioEventLoopGroup(config.clientThreads())).
+                handler(new ChannelInitializer() {
+                    @Override
+                    public void initChannel(Channel ch) throws Exception {
+                        ch.pipeline().
+                                addLast(new DatagramFrameCodec()).
+                                addLast(clientMeter());
+                    }
+                }).
+                option(ChannelOption.RCVBUF_ALLOCATOR,
+                        new DatagramRecvByteBufAllocator(config.frameSize(), config.allocator())).
+                option(ChannelOption.SO_RCVBUF, 1024 * 1024 * 1024).
+                option(ChannelOption.SO_SNDBUF, 1024 * 1024 * 1024);
+    }
+
+    @Override
+    public Class<? extends Channel> clientChannel() {
+        return NioDatagramChannel.class;
+    }
+
+    @Override
+    public Class<? extends Channel> serverChannel() {
+        return NioDatagramChannel.class;
+    }
+
+    /**
+     * Allocates heap or direct receive buffers of a fixed size, from an unpooled allocator if the channel's is
+     * pooled. Direct buffers need sun.misc.Unsafe to be read into, see above.
+     */
+    private static final class DatagramRecvByteBufAllocator
+            implements RecvByteBufAllocator, RecvByteBufAllocator.Handle {
+        private static final ByteBufAllocator UNPOOLED_HEAP = new UnpooledByteBufAllocator(false);
+        private static final ByteBufAllocator UNPOOLED_DIRECT = new UnpooledByteBufAllocator(true);
+
+        private final int bufferSize;
+        private final Allocator allocator;
+
+        DatagramRecvByteBufAllocator(int bufferSize, Allocator allocator) {
+            this.bufferSize = bufferSize;
+            this.allocator = allocator;
+        }
+
+        @Override
+        public Handle newHandle() {
+            return this;
+        }
+
+        @Override
+        public ByteBuf allocate(ByteBufAllocator alloc) {
+            if (allocator == Allocator.DEFAULT) {
+                return alloc.ioBuffer(bufferSize);
+            }
+            if (allocator.isDirect() && PlatformDependent.hasUnsafe()) {
+                return (allocator.isPooled() ? UNPOOLED_DIRECT : alloc).directBuffer(bufferSize);
+            }
+            return (allocator.isPooled() ? UNPOOLED_HEAP : alloc).heapBuffer(bufferSize);
+        }
+
+        @Override
+        public int guess() {
+            return bufferSize;
+        }
+
+        @Override
+        public void record(int actualReadBytes) {
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.sun.nio.sctp.SctpStandardSocketOptions;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ServerChannel;
 import io.netty.channel.oio.OioEventLoopGroup;
@@ -43,10 +44,37 @@ public class OioSctpLatencyTest extends NettyLatencyTest {
 
     List<Integer> streamConfig = new ArrayList<Integer>(2);
 
-    public OioSctpLatencyTest(long[] latencyIntervals) {
-        super(latencyIntervals);
+    private final int streams;
+
+    public OioSctpLatencyTest(PerfConfig config) {
+        super(config);
+        streams = NioSctpLatencyTest.streams(config);
         streamConfig.add(MAX_INBOUND_STREAMS);
         streamConfig.add(MAX_OUTBOUND_STREAMS);
+        if (config.sctpUnorderedStreams() > 0) {
+            // OioSctpChannel drops the unordered flag on write and keeps its channel private, so it can not be fixed
+            // by a subclass like UnorderedNioSctpChannel
+            System.out.println("OioSctpChannel sends unordered messages ordered, sctpUnorderedStreams has no effect");
+        }
+    }
+
+    @Override
+    protected int streams() {
+        return streams;
+    }
+
+    @Override
+    protected int streamIdentifier(ChannelHandlerContext ctx) {
+        Integer streamIdentifier = ctx.channel().attr(SctpInboundStreamingHandler.STREAM_IDENTIFIER).get();
+        return streamIdentifier == null ? -1 : streamIdentifier;
+    }
+
+    /**
+     * The highest {@link PerfConfig#sctpUnorderedStreams()} streams are sent unordered.
+     */
+    SctpOutboundStreamingHandler outboundStreamingHandler() {
+        return new SctpOutboundStreamingHandler(PROTOCOL_ID, 0, streams - 1,
+                config.sctpStreamSelection().newSelector(config), streams - config.sctpUnorderedStreams(), streams - 1);
     }
 
     @Override
@@ -58,9 +86,9 @@ public class OioSctpLatencyTest extends NettyLatencyTest {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(new SctpOutboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(serverMeter);
+                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, streams - 1)).
+                                addLast(outboundStreamingHandler()).
+                                addLast(serverMeter());
                     }
                 }).
                 option(SctpChannelOption.SCTP_NODELAY, true).
@@ -78,9 +106,9 @@ public class OioSctpLatencyTest extends NettyLatencyTest {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(new SctpOutboundStreamingHandler(PROTOCOL_ID, 0, 9)).
-                                addLast(clientMeter);
+                                addLast(new SctpInboundStreamingHandler(PROTOCOL_ID, 0, streams - 1)).
+                                addLast(outboundStreamingHandler()).
+                                addLast(clientMeter());
                     }
                 }).
                 option(SctpChannelOption.SCTP_NODELAY, true).
@@ -24,12 +24,12 @@ import io.netty.channel.ServerChannel;
 import io.netty.channel.oio.OioEventLoopGroup;
 import io.netty.channel.socket.oio.OioServerSocketChannel;
 import io.netty.channel.socket.oio.OioSocketChannel;
-import io.netty.handler.codec.FixedLengthFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
 
 public class OioTcpLatencyTest extends NettyLatencyTest {
 
-    public OioTcpLatencyTest(long[] latencyIntervals) {
-        super(latencyIntervals);
+    public OioTcpLatencyTest(PerfConfig config) {
+        super(config);
     }
 
     @Override
@@ -40,8 +40,9 @@ public class OioTcpLatencyTest extends NettyLatencyTest {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new FixedLengthFrameDecoder(ECHO_FRAME_SIZE)).
-                                addLast(serverMeter);
+                                addLast(new LengthFieldFrameDecoder(config.frameSize())).
+                                addLast(new LengthFieldPrepender(LENGTH_FIELD_SIZE)).
+                                addLast(serverMeter());
                     }
                 }).option(ChannelOption.TCP_NODELAY, true);
     }
@@ -54,8 +55,9 @@ public class OioTcpLatencyTest extends NettyLatencyTest {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().
-                                addLast(new FixedLengthFrameDecoder(ECHO_FRAME_SIZE)).
-                                addLast(clientMeter);
+                                addLast(new LengthFieldFrameDecoder(config.frameSize())).
+                                addLast(new LengthFieldPrepender(LENGTH_FIELD_SIZE)).
+                                addLast(clientMeter());
                     }
                 }).option(ChannelOption.TCP_NODELAY, true).
                 option(ChannelOption.SO_RCVBUF, 1024 * 1024 * 1024).
@@ -0,0 +1,728 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.channel.ChannelOption;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of a {@link NettyLatencyTest} run.
+ */
+public final class PerfConfig {
+    public enum Mode {
+        /**
+         * Closed loop, all messages are written in one tight loop, see {@link NettyLatencyTest#execute(int)}.
+         */
+        LATENCY("latency"),
+        /**
+         * Open loop at a fixed rate, see {@link NettyLatencyTest#executeFixedRate(int, int)}.
+         */
+        FIXED_RATE("fixed-rate"),
+        /**
+         * As fast as the channels accept over a timed window, see
+         * {@link NettyLatencyTest#executeThroughput(long, TimeUnit)}.
+         */
+        THROUGHPUT("throughput");
+
+        private final String id;
+
+        Mode(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return the command line name of the mode.
+         */
+        public String id() {
+            return id;
+        }
+
+        public static Mode forId(String id) {
+            for (Mode mode : values()) {
+                if (mode.id.equals(id)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unknown mode " + id);
+        }
+    }
+
+    public enum Echo {
+        /**
+         * The server rewrites the server time of the inbound frame and writes the same buffer back rather than a
+         * copy. The transport and its codecs still allocate per message, see allocated/msg in the results.
+         */
+        IN_PLACE("in-place"),
+        /**
+         * The server writes a freshly allocated copy of the frame and releases the inbound one.
+         */
+        COPY("copy");
+
+        private final String id;
+
+        Echo(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return the command line name of the echo.
+         */
+        public String id() {
+            return id;
+        }
+
+        public static Echo forId(String id) {
+            for (Echo echo : values()) {
+                if (echo.id.equals(id)) {
+                    return echo;
+                }
+            }
+            throw new IllegalArgumentException("Unknown echo " + id);
+        }
+    }
+
+    public enum Polling {
+        /**
+         * The event loops park in select() while idle and are woken up by the kernel for every message.
+         */
+        SELECT("select"),
+        /**
+         * The NIO event loops serving the client and server channels spin on selectNow() and their pending
+         * tasks, a core each, parking only after {@link PerfConfig#spinParkMicros()} without a read.
+         */
+        BUSY_SPIN("busy-spin");
+
+        private final String id;
+
+        Polling(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return the command line name of the polling.
+         */
+        public String id() {
+            return id;
+        }
+
+        public static Polling forId(String id) {
+            for (Polling polling : values()) {
+                if (polling.id.equals(id)) {
+                    return polling;
+                }
+            }
+            throw new IllegalArgumentException("Unknown polling " + id);
+        }
+    }
+
+    public final static long DEFAULT_HIGHEST_TRACKABLE_LATENCY = TimeUnit.SECONDS.toNanos(10);
+    public final static int DEFAULT_SIGNIFICANT_DIGITS = 3;
+    public final static long DEFAULT_IDLE_TIMEOUT_MILLIS = 5000L;
+    public final static int DEFAULT_CONNECTIONS = 1;
+    public final static int DEFAULT_MESSAGES = 100000;
+    public final static int DEFAULT_MESSAGES_PER_SECOND = 10000;
+    public final static long DEFAULT_DURATION_SECONDS = 10L;
+    public final static int DEFAULT_WARMUP_ITERATIONS = 1;
+    public final static int DEFAULT_ITERATIONS = 1;
+    public final static int DEFAULT_FLUSH_EVERY = 16;
+    public final static long DEFAULT_FLUSH_INTERVAL_MICROS = 100L;
+    public final static int DEFAULT_SCTP_SESSIONS = 64;
+    public final static int DEFAULT_POOL_ARENAS = Runtime.getRuntime().availableProcessors();
+    public final static int DEFAULT_POOL_PAGE_SIZE = 8192;
+    public final static int DEFAULT_POOL_MAX_ORDER = 11;
+    public final static double DEFAULT_REGRESSION_THRESHOLD_PERCENT = 10.0d;
+
+    private Transport transport = Transport.NIO_TCP;
+    private Mode mode = Mode.LATENCY;
+    private Echo echo = Echo.IN_PLACE;
+    private FlushStrategy flushStrategy = FlushStrategy.BATCH;
+    private int flushEvery = DEFAULT_FLUSH_EVERY;
+    private long flushIntervalMicros = DEFAULT_FLUSH_INTERVAL_MICROS;
+    private StreamSelection sctpStreamSelection = StreamSelection.ROUND_ROBIN;
+    private int sctpSessions = DEFAULT_SCTP_SESSIONS;
+    private int sctpUnorderedStreams;
+    private Allocator allocator = Allocator.DEFAULT;
+    private int poolArenas = DEFAULT_POOL_ARENAS;
+    private int poolPageSize = DEFAULT_POOL_PAGE_SIZE;
+    private int poolMaxOrder = DEFAULT_POOL_MAX_ORDER;
+    private int messages = DEFAULT_MESSAGES;
+    private int messagesPerSecond = DEFAULT_MESSAGES_PER_SECOND;
+    private long durationSeconds = DEFAULT_DURATION_SECONDS;
+    private int frameSize = NettyLatencyTest.ECHO_FRAME_SIZE;
+    private int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+    private int iterations = DEFAULT_ITERATIONS;
+    private final Map<ChannelOption<?>, Object> options = new LinkedHashMap<ChannelOption<?>, Object>();
+    private final Map<String, String> sysctls = new LinkedHashMap<String, String>();
+    private long highestTrackableLatency = DEFAULT_HIGHEST_TRACKABLE_LATENCY;
+    private int significantDigits = DEFAULT_SIGNIFICANT_DIGITS;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private long reportIntervalMillis;
+    private ClockSource clockSource = ClockSource.NANO_TIME;
+    private boolean subtractClockOverhead;
+    private int connections = DEFAULT_CONNECTIONS;
+    private int clientThreads;
+    private int serverBossThreads;
+    private int serverWorkerThreads;
+    private Polling polling = Polling.SELECT;
+    private long spinParkMicros;
+    private String resultsDir;
+    private String baseline;
+    private double regressionThresholdPercent = DEFAULT_REGRESSION_THRESHOLD_PERCENT;
+    private String label = "";
+
+    public Transport transport() {
+        return transport;
+    }
+
+    public PerfConfig transport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public PerfConfig mode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @return how the server echoes frames back to the client.
+     */
+    public Echo echo() {
+        return echo;
+    }
+
+    public PerfConfig echo(Echo echo) {
+        this.echo = echo;
+        return this;
+    }
+
+    /**
+     * @return when the client send path and the echoing server flush their writes.
+     */
+    public FlushStrategy flushStrategy() {
+        return flushStrategy;
+    }
+
+    public PerfConfig flushStrategy(FlushStrategy flushStrategy) {
+        this.flushStrategy = flushStrategy;
+        return this;
+    }
+
+    /**
+     * @return number of frames written between flushes of {@link FlushStrategy#EVERY_N}.
+     */
+    public int flushEvery() {
+        return flushEvery;
+    }
+
+    public PerfConfig flushEvery(int flushEvery) {
+        if (flushEvery <= 0) {
+            throw new IllegalArgumentException("flushEvery must be positive");
+        }
+        this.flushEvery = flushEvery;
+        return this;
+    }
+
+    /**
+     * @return micro secs between the timed flushes of {@link FlushStrategy#INTERVAL}.
+     */
+    public long flushIntervalMicros() {
+        return flushIntervalMicros;
+    }
+
+    public PerfConfig flushIntervalMicros(long flushIntervalMicros) {
+        if (flushIntervalMicros <= 0L) {
+            throw new IllegalArgumentException("flushIntervalMicros must be positive");
+        }
+        this.flushIntervalMicros = flushIntervalMicros;
+        return this;
+    }
+
+    /**
+     * @return how the SCTP tests spread their frames over the streams of an association.
+     */
+    public StreamSelection sctpStreamSelection() {
+        return sctpStreamSelection;
+    }
+
+    public PerfConfig sctpStreamSelection(StreamSelection sctpStreamSelection) {
+        this.sctpStreamSelection = sctpStreamSelection;
+        return this;
+    }
+
+    /**
+     * @return number of sessions the frames are spread over by {@link StreamSelection#KEY_AFFINITY}.
+     */
+    public int sctpSessions() {
+        return sctpSessions;
+    }
+
+    public PerfConfig sctpSessions(int sctpSessions) {
+        if (sctpSessions <= 0) {
+            throw new IllegalArgumentException("sctpSessions must be positive");
+        }
+        this.sctpSessions = sctpSessions;
+        return this;
+    }
+
+    /**
+     * @return number of SCTP streams, counted down from the highest, whose messages are sent unordered.
+     */
+    public int sctpUnorderedStreams() {
+        return sctpUnorderedStreams;
+    }
+
+    public PerfConfig sctpUnorderedStreams(int sctpUnorderedStreams) {
+        if (sctpUnorderedStreams < 0) {
+            throw new IllegalArgumentException("sctpUnorderedStreams must not be negative");
+        }
+        this.sctpUnorderedStreams = sctpUnorderedStreams;
+        return this;
+    }
+
+    /**
+     * @return the buffer allocator of all client and server channels.
+     */
+    public Allocator allocator() {
+        return allocator;
+    }
+
+    public PerfConfig allocator(Allocator allocator) {
+        this.allocator = allocator;
+        return this;
+    }
+
+    /**
+     * @return number of heap and of direct arenas of the pooled allocators, the threads allocating are spread
+     * over them.
+     */
+    public int poolArenas() {
+        return poolArenas;
+    }
+
+    public PerfConfig poolArenas(int poolArenas) {
+        if (poolArenas < 0) {
+            throw new IllegalArgumentException("poolArenas must be >= 0");
+        }
+        this.poolArenas = poolArenas;
+        return this;
+    }
+
+    /**
+     * @return page size of the pooled allocators, the smallest run they allocate, a power of 2 of at least 4096.
+     */
+    public int poolPageSize() {
+        return poolPageSize;
+    }
+
+    public PerfConfig poolPageSize(int poolPageSize) {
+        if (poolPageSize < 4096 || (poolPageSize & poolPageSize - 1) != 0) {
+            throw new IllegalArgumentException("poolPageSize must be a power of 2 >= 4096");
+        }
+        this.poolPageSize = poolPageSize;
+        return this;
+    }
+
+    /**
+     * @return the chunks of the pooled allocators are poolPageSize << poolMaxOrder bytes, buffers larger than
+     * a chunk are not pooled.
+     */
+    public int poolMaxOrder() {
+        return poolMaxOrder;
+    }
+
+    public PerfConfig poolMaxOrder(int poolMaxOrder) {
+        if (poolMaxOrder < 0 || poolMaxOrder > 14) {
+            throw new IllegalArgumentException("poolMaxOrder must be between 0 and 14");
+        }
+        this.poolMaxOrder = poolMaxOrder;
+        return this;
+    }
+
+    /**
+     * @return number of messages sent per connection by the latency and fixed-rate modes.
+     */
+    public int messages() {
+        return messages;
+    }
+
+    public PerfConfig messages(int messages) {
+        this.messages = messages;
+        return this;
+    }
+
+    /**
+     * @return rate per connection of the fixed-rate mode.
+     */
+    public int messagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    public PerfConfig messagesPerSecond(int messagesPerSecond) {
+        this.messagesPerSecond = messagesPerSecond;
+        return this;
+    }
+
+    /**
+     * @return length of the sending window of the throughput mode.
+     */
+    public long durationSeconds() {
+        return durationSeconds;
+    }
+
+    public PerfConfig durationSeconds(long durationSeconds) {
+        this.durationSeconds = durationSeconds;
+        return this;
+    }
+
+    /**
+     * @return size in bytes of every echo frame, at least {@link NettyLatencyTest#ECHO_FRAME_SIZE}. Stream
+     * oriented transports add a {@link NettyLatencyTest#LENGTH_FIELD_SIZE} bytes length prefix.
+     */
+    public int frameSize() {
+        return frameSize;
+    }
+
+    public PerfConfig frameSize(int frameSize) {
+        if (frameSize < NettyLatencyTest.ECHO_FRAME_SIZE) {
+            throw new IllegalArgumentException("frameSize must be >= " + NettyLatencyTest.ECHO_FRAME_SIZE);
+        }
+        this.frameSize = frameSize;
+        return this;
+    }
+
+    /**
+     * @return number of runs made before the measured ones, their samples are discarded so that interpreter
+     * and JIT compilation time does not pollute the results.
+     */
+    public int warmupIterations() {
+        return warmupIterations;
+    }
+
+    public PerfConfig warmupIterations(int warmupIterations) {
+        if (warmupIterations < 0) {
+            throw new IllegalArgumentException("warmupIterations must be >= 0");
+        }
+        this.warmupIterations = warmupIterations;
+        return this;
+    }
+
+    /**
+     * @return number of measured runs, reported individually and summarized.
+     */
+    public int iterations() {
+        return iterations;
+    }
+
+    public PerfConfig iterations(int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * @return channel options applied to the client and server channels on top of the transport defaults.
+     */
+    public Map<ChannelOption<?>, Object> options() {
+        return Collections.unmodifiableMap(options);
+    }
+
+    public <T> PerfConfig option(ChannelOption<T> option, T value) {
+        options.put(option, value);
+        return this;
+    }
+
+    /**
+     * @return kernel parameters set for the run and restored afterwards, by their sysctl name, e.g.
+     * net.sctp.sack_timeout. SCTP association defaults like the SACK delay, max burst and heartbeat interval
+     * are no socket options, only sysctls.
+     */
+    public Map<String, String> sysctls() {
+        return Collections.unmodifiableMap(sysctls);
+    }
+
+    public PerfConfig sysctl(String name, String value) {
+        sysctls.put(name, value);
+        return this;
+    }
+
+    /**
+     * @return the largest latency in nano secs the histograms can record.
+     */
+    public long highestTrackableLatency() {
+        return highestTrackableLatency;
+    }
+
+    public PerfConfig highestTrackableLatency(long highestTrackableLatency) {
+        if (highestTrackableLatency < 2L) {
+            throw new IllegalArgumentException("highestTrackableLatency must be >= 2");
+        }
+        this.highestTrackableLatency = highestTrackableLatency;
+        return this;
+    }
+
+    /**
+     * @return number of significant decimal digits the histograms keep for every latency.
+     */
+    public int significantDigits() {
+        return significantDigits;
+    }
+
+    public PerfConfig significantDigits(int significantDigits) {
+        if (significantDigits < 0 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits must be between 0 and 5");
+        }
+        this.significantDigits = significantDigits;
+        return this;
+    }
+
+    /**
+     * @return how long to wait for the last ping once no echo comes back any more, it may be lost on
+     * connectionless transports.
+     */
+    public long idleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public PerfConfig idleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * @return how often the round trip percentiles and msgs/sec of the interval that just ended are printed
+     * during a run, 0 to only report the whole run.
+     */
+    public long reportIntervalMillis() {
+        return reportIntervalMillis;
+    }
+
+    public PerfConfig reportIntervalMillis(long reportIntervalMillis) {
+        if (reportIntervalMillis < 0L) {
+            throw new IllegalArgumentException("reportIntervalMillis must not be negative");
+        }
+        this.reportIntervalMillis = reportIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @return the clock the latencies are measured with, unless {@link NettyLatencyTest#clock()} is overridden.
+     */
+    public ClockSource clockSource() {
+        return clockSource;
+    }
+
+    public PerfConfig clockSource(ClockSource clockSource) {
+        this.clockSource = clockSource;
+        return this;
+    }
+
+    /**
+     * @return true to subtract the cost of a clock reading, as calibrated before every run, from every latency
+     * recorded, so transports compared on hosts with different clocksources are charged the same.
+     */
+    public boolean subtractClockOverhead() {
+        return subtractClockOverhead;
+    }
+
+    public PerfConfig subtractClockOverhead(boolean subtractClockOverhead) {
+        this.subtractClockOverhead = subtractClockOverhead;
+        return this;
+    }
+
+    /**
+     * @return number of client connections driven concurrently.
+     */
+    public int connections() {
+        return connections;
+    }
+
+    public PerfConfig connections(int connections) {
+        if (connections <= 0) {
+            throw new IllegalArgumentException("connections must be positive");
+        }
+        this.connections = connections;
+        return this;
+    }
+
+    /**
+     * @return number of client event loop threads, 0 for the Netty default of twice the number of cores.
+     */
+    public int clientThreads() {
+        return clientThreads;
+    }
+
+    public PerfConfig clientThreads(int clientThreads) {
+        this.clientThreads = clientThreads;
+        return this;
+    }
+
+    /**
+     * @return number of server event loop threads accepting connections, 0 for the Netty default.
+     */
+    public int serverBossThreads() {
+        return serverBossThreads;
+    }
+
+    public PerfConfig serverBossThreads(int serverBossThreads) {
+        this.serverBossThreads = serverBossThreads;
+        return this;
+    }
+
+    /**
+     * @return number of server event loop threads serving the accepted connections, 0 for the Netty default.
+     */
+    public int serverWorkerThreads() {
+        return serverWorkerThreads;
+    }
+
+    public PerfConfig serverWorkerThreads(int serverWorkerThreads) {
+        this.serverWorkerThreads = serverWorkerThreads;
+        return this;
+    }
+
+    /**
+     * @return how the event loops serving the client and server channels wait for messages.
+     */
+    public Polling polling() {
+        return polling;
+    }
+
+    public PerfConfig polling(Polling polling) {
+        this.polling = polling;
+        return this;
+    }
+
+    /**
+     * @return micro secs a busy spinning event loop keeps spinning without a read before it parks in select()
+     * until the next one, 0 to spin for the whole run.
+     */
+    public long spinParkMicros() {
+        return spinParkMicros;
+    }
+
+    public PerfConfig spinParkMicros(long spinParkMicros) {
+        if (spinParkMicros < 0L) {
+            throw new IllegalArgumentException("spinParkMicros must not be negative");
+        }
+        this.spinParkMicros = spinParkMicros;
+        return this;
+    }
+
+    /**
+     * @return directory every configuration writes its results to, one file each, null to only print them.
+     */
+    public String resultsDir() {
+        return resultsDir;
+    }
+
+    public PerfConfig resultsDir(String resultsDir) {
+        this.resultsDir = resultsDir;
+        return this;
+    }
+
+    /**
+     * @return results.csv of an earlier run to check the results against, see {@link Baseline}, null for none.
+     */
+    public String baseline() {
+        return baseline;
+    }
+
+    public PerfConfig baseline(String baseline) {
+        this.baseline = baseline;
+        return this;
+    }
+
+    /**
+     * @return how many percent the round trip percentiles may grow, or msgs/sec drop, against the baseline.
+     */
+    public double regressionThresholdPercent() {
+        return regressionThresholdPercent;
+    }
+
+    public PerfConfig regressionThresholdPercent(double regressionThresholdPercent) {
+        if (regressionThresholdPercent < 0.0d) {
+            throw new IllegalArgumentException("regressionThresholdPercent must not be negative");
+        }
+        this.regressionThresholdPercent = regressionThresholdPercent;
+        return this;
+    }
+
+    /**
+     * @return the settings telling this configuration apart from the others of its matrix, e.g.
+     * "option.SCTP_NODELAY=true, sysctl.net.sctp.sack_timeout=10", empty if it is the only one.
+     */
+    public String label() {
+        return label;
+    }
+
+    public PerfConfig label(String label) {
+        this.label = label;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "PerfConfig {" +
+                " transport=" + transport.id() +
+                ", mode=" + mode.id() +
+                ", echo=" + echo.id() +
+                ", flushStrategy=" + flushStrategy.id() +
+                ", flushEvery=" + flushEvery +
+                ", flushIntervalMicros=" + flushIntervalMicros +
+                ", sctpStreamSelection=" + sctpStreamSelection.id() +
+                ", sctpSessions=" + sctpSessions +
+                ", sctpUnorderedStreams=" + sctpUnorderedStreams +
+                ", allocator=" + allocator.id() +
+                ", poolArenas=" + poolArenas +
+                ", poolPageSize=" + poolPageSize +
+                ", poolMaxOrder=" + poolMaxOrder +
+                ", messages=" + messages +
+                ", messagesPerSecond=" + messagesPerSecond +
+                ", durationSeconds=" + durationSeconds +
+                ", frameSize=" + frameSize +
+                ", warmupIterations=" + warmupIterations +
+                ", iterations=" + iterations +
+                ", options=" + options +
+                ", sysctls=" + sysctls +
+                ", highestTrackableLatency=" + highestTrackableLatency +
+                ", significantDigits=" + significantDigits +
+                ", idleTimeoutMillis=" + idleTimeoutMillis +
+                ", reportIntervalMillis=" + reportIntervalMillis +
+                ", clockSource=" + clockSource.id() +
+                ", subtractClockOverhead=" + subtractClockOverhead +
+                ", connections=" + connections +
+                ", clientThreads=" + clientThreads +
+                ", serverBossThreads=" + serverBossThreads +
+                ", serverWorkerThreads=" + serverWorkerThreads +
+                ", polling=" + polling.id() +
+                ", spinParkMicros=" + spinParkMicros +
+                ", resultsDir=" + resultsDir +
+                ", baseline=" + baseline +
+                ", regressionThresholdPercent=" + regressionThresholdPercent +
+                " }";
+    }
+}
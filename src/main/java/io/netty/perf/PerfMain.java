@@ -15,32 +15,287 @@ package io.netty.perf;
  * under the License.
  */
 
-import io.netty.perf.collection.Histogram;
+import io.netty.perf.collection.LogLinearHistogram;
+import io.netty.perf.collection.SampleStatistics;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every configuration given on the command line, see {@link PerfMatrix#usage()}. Without arguments
+ * a single closed loop latency run over NIO TCP is made.
+ */
 public class PerfMain {
+    private final static String SUMMARY_FORMAT = "%-9s %-11s %-15s %-11s %10s %12s %12s %12s %12s %14s %10s %12s";
+    private final static String SUMMARY_HEADER = String.format(SUMMARY_FORMAT, "transport", "mode", "allocator",
+            "flush", "frameSize", "connections", "rtt 50%", "rtt 99%", "rtt 99.99%", "msgs/sec", "MB/sec",
+            "flushes/msg");
+
     public static void main(String[] args) throws Exception{
-        long[] intervals = new long[255];//256 intervals
-        final long minLatency = 50000L;
-        long intervalUpperBound = minLatency;
-        intervals[0] = minLatency;
-        for (int i = 1, size = intervals.length; i < size; i++) {
-            intervalUpperBound += minLatency;
-            intervals[i] = intervalUpperBound;
+        List<PerfConfig> configs;
+        try {
+            configs = PerfMatrix.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(PerfMatrix.usage());
+            System.exit(1);
+            return;
+        } catch (IOException e) {
+            System.err.println("Can not read the config file: " + e);
+            System.err.println(PerfMatrix.usage());
+            System.exit(1);
+            return;
+        }
+
+        // a bad baseline fails now rather than after all configurations ran
+        Map<String, Baseline> baselines;
+        try {
+            baselines = loadBaselines(configs);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid baseline: " + e.getMessage());
+            System.exit(1);
+            return;
+        } catch (IOException e) {
+            System.err.println("Can not read the baseline: " + e);
+            System.exit(1);
+            return;
         }
 
-        executePerf(new NioTcpLatencyTest(intervals), 100000);
+        List<ResultSummary> summaries = new ArrayList<ResultSummary>(configs.size());
+        Set<String> resultsDirs = new HashSet<String>();
+        for (int i = 0; i < configs.size(); i++) {
+            summaries.add(executePerf(configs.get(i), i + 1, resultsDirs));
+        }
+
+        if (configs.size() > 1) {
+            System.out.println("********** All configurations **********");
+            System.out.println(SUMMARY_HEADER + "  swept settings");
+            for (int i = 0; i < summaries.size(); i++) {
+                System.out.println(summaries.get(i).summaryLine(SUMMARY_FORMAT) + "  " + configs.get(i).label());
+            }
+        }
+
+        if (!checkBaseline(configs, summaries, baselines)) {
+            System.exit(2);
+        }
     }
 
-    private static void executePerf(NettyLatencyTest perfBench, int count) throws InterruptedException{
+    /**
+     * @return the {@link PerfConfig#baseline()}s of the configurations by file name.
+     */
+    private static Map<String, Baseline> loadBaselines(List<PerfConfig> configs) throws IOException {
+        Map<String, Baseline> baselines = new HashMap<String, Baseline>();
+        for (PerfConfig config : configs) {
+            if (config.baseline() != null && !baselines.containsKey(config.baseline())) {
+                baselines.put(config.baseline(), Baseline.load(config.baseline()));
+            }
+        }
+        return baselines;
+    }
+
+    /**
+     * Check every configuration with a {@link PerfConfig#baseline()} against it.
+     *
+     * @return false if any of them regressed.
+     */
+    private static boolean checkBaseline(List<PerfConfig> configs, List<ResultSummary> summaries,
+                                         Map<String, Baseline> baselines) {
+        List<String> regressions = new ArrayList<String>();
+        for (int i = 0; i < configs.size(); i++) {
+            PerfConfig config = configs.get(i);
+            if (config.baseline() == null) {
+                continue;
+            }
+            Baseline baseline = baselines.get(config.baseline());
+            regressions.addAll(baseline.regressions(summaries.get(i), config.regressionThresholdPercent()));
+        }
+
+        if (baselines.isEmpty()) {
+            return true;
+        }
+        System.out.println("********** Baseline check **********");
+        for (String regression : regressions) {
+            System.out.println(regression);
+        }
+        System.out.println(regressions.isEmpty() ? "No regressions" : regressions.size() + " regressions");
+        return regressions.isEmpty();
+    }
+
+    /**
+     * @param resultsDirs the {@link PerfConfig#resultsDir()}s written to by this run so far.
+     * @return the summary of the configuration for the final table and the baseline check.
+     */
+    private static ResultSummary executePerf(PerfConfig config, int index, Set<String> resultsDirs)
+            throws InterruptedException, IOException {
+        // the test may reject the config, before any kernel parameter is changed
+        NettyLatencyTest perfBench = config.transport().newTest(config);
+        Sysctls sysctls = Sysctls.apply(config.sysctls());
         try {
             perfBench.setup();
             System.out.println("************************************************");
             System.out.println("********** Running " + perfBench.getClass().getSimpleName() + " **********");
-            final Histogram observations = perfBench.execute(count);
-            System.out.println(observations);
+            System.out.println(config);
+
+            // every run starts by clearing the recorders, so the warmup samples are simply dropped
+            for (int i = 0; i < config.warmupIterations(); i++) {
+                execute(perfBench, config);
+                System.out.println("Warmup iteration " + (i + 1) + " of " + config.warmupIterations() + " done");
+            }
+
+            List<Object> results = new ArrayList<Object>(config.iterations());
+            for (int i = 0; i < config.iterations(); i++) {
+                Object result = execute(perfBench, config);
+                System.out.println("********** Iteration " + (i + 1) + " of " + config.iterations() + " **********");
+                System.out.println(result);
+                results.add(result);
+            }
+
+            if (config.iterations() > 1) {
+                System.out.println("********** Summary of " + config.iterations() + " iterations **********");
+                if (config.mode() == PerfConfig.Mode.THROUGHPUT) {
+                    printThroughputSummary(results);
+                } else {
+                    printLatencySummary(results);
+                }
+            }
             System.out.println("************************************************");
+            ResultSummary summary = ResultSummary.of(config, results);
+            if (config.resultsDir() != null) {
+                writeResults(config, index, results, summary, resultsDirs.add(config.resultsDir()));
+            }
+            return summary;
         } finally {
             perfBench.tearDown();
+            sysctls.restore();
+        }
+    }
+
+    /**
+     * Write the configuration, every measured iteration and the summary line to a file of its own, named after
+     * its index and {@link PerfConfig#label()}, and append the summary to results.csv and results.jsonl, one line
+     * each. A sweep interrupted half way keeps the rows of the configurations it completed.
+     *
+     * @param firstOfRun true for the first configuration of a run written to the directory, which replaces the
+     *                   results.csv and results.jsonl of an earlier run, so a rerun into the same directory leaves
+     *                   one row per configuration and can serve as a {@link Baseline}.
+     */
+    static void writeResults(PerfConfig config, int index, List<Object> results, ResultSummary summary,
+                             boolean firstOfRun) throws IOException {
+        File dir = new File(config.resultsDir());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can not create results directory " + dir);
         }
+
+        String name = String.format("%03d-%s-%s", index, config.transport().id(), config.mode().id());
+        if (config.label().length() > 0) {
+            name += '-' + config.label().replaceAll("[^A-Za-z0-9.=_-]+", "_");
+        }
+
+        PrintStream out = new PrintStream(new FileOutputStream(new File(dir, name + ".txt")), false, "UTF-8");
+        try {
+            out.println(config);
+            for (int i = 0; i < results.size(); i++) {
+                out.println("********** Iteration " + (i + 1) + " of " + results.size() + " **********");
+                out.println(results.get(i));
+            }
+            out.println("********** Summary **********");
+            out.println(SUMMARY_HEADER);
+            out.println(summary.summaryLine(SUMMARY_FORMAT));
+            if (config.label().length() > 0) {
+                out.println("swept settings: " + config.label());
+            }
+        } finally {
+            out.close();
+        }
+
+        File csv = new File(dir, "results.csv");
+        boolean header = firstOfRun || csv.length() == 0L;
+        out = new PrintStream(new FileOutputStream(csv, !firstOfRun), false, "UTF-8");
+        try {
+            if (header) {
+                out.println(ResultSummary.csvHeader());
+            }
+            out.println(summary.toCsv());
+        } finally {
+            out.close();
+        }
+
+        out = new PrintStream(new FileOutputStream(new File(dir, "results.jsonl"), !firstOfRun), false, "UTF-8");
+        try {
+            out.println(summary.toJson());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Object execute(NettyLatencyTest perfBench, PerfConfig config) throws InterruptedException {
+        switch (config.mode()) {
+            case LATENCY:
+                return perfBench.execute(config.messages());
+            case FIXED_RATE:
+                return perfBench.executeFixedRate(config.messages(), config.messagesPerSecond());
+            case THROUGHPUT:
+                return perfBench.executeThroughput(config.durationSeconds(), TimeUnit.SECONDS);
+            default:
+                throw new IllegalStateException("Unknown mode " + config.mode());
+        }
+    }
+
+    private static void printLatencySummary(List<Object> results) {
+        final int size = results.size();
+        List<LatencyResult> latencies = new ArrayList<LatencyResult>(size);
+        double[] mean = new double[size];
+        double[] median = new double[size];
+        double[] twoNines = new double[size];
+        double[] fourNines = new double[size];
+        double[] max = new double[size];
+        double[] messagesPerSecond = new double[size];
+        double[] clockOverhead = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            LatencyResult result = (LatencyResult) results.get(i);
+            LogLinearHistogram roundTrip = result.roundTrip();
+            latencies.add(result);
+            mean[i] = roundTrip.getMean();
+            median[i] = roundTrip.getUpperBoundForFactor(0.5d);
+            twoNines[i] = roundTrip.getTwoNinesUpperBound();
+            fourNines[i] = roundTrip.getFourNinesUpperBound();
+            max[i] = roundTrip.getMax();
+            messagesPerSecond[i] = result.messagesPerSecond();
+            clockOverhead[i] = result.clockCalibration().overheadNanos();
+        }
+
+        System.out.println("round trip mean   " + new SampleStatistics(mean));
+        System.out.println("round trip 50%    " + new SampleStatistics(median));
+        System.out.println("round trip 99%    " + new SampleStatistics(twoNines));
+        System.out.println("round trip 99.99% " + new SampleStatistics(fourNines));
+        System.out.println("round trip max    " + new SampleStatistics(max));
+        System.out.println("msgs/sec          " + new SampleStatistics(messagesPerSecond));
+        System.out.println("clock overhead    " + new SampleStatistics(clockOverhead));
+        System.out.println("all iterations " + LatencyResult.merge(latencies));
+    }
+
+    private static void printThroughputSummary(List<Object> results) {
+        final int size = results.size();
+        double[] messagesPerSecond = new double[size];
+        double[] bytesPerSecond = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            Throughput result = (Throughput) results.get(i);
+            messagesPerSecond[i] = result.messagesPerSecond();
+            bytesPerSecond[i] = result.bytesPerSecond();
+        }
+
+        System.out.println("msgs/sec  " + new SampleStatistics(messagesPerSecond));
+        System.out.println("bytes/sec " + new SampleStatistics(bytesPerSecond));
     }
 }
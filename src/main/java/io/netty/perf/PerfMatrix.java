@@ -0,0 +1,339 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.nio.sctp.SctpStandardSocketOptions.InitMaxStreams;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.sctp.SctpChannelOption;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Expands settings given on the command line or in a properties file into the matrix of {@link PerfConfig}s
+ * to run.
+ *
+ * Every setting takes a comma separated list of values, and one configuration is run for every combination
+ * of them. Settings are named after the {@link PerfConfig} properties, channel options are given as
+ * {@code option.<NAME>} with the name of a {@link ChannelOption} or {@link SctpChannelOption} constant.
+ */
+public final class PerfMatrix {
+    private final static String OPTION_PREFIX = "option.";
+    private final static String SYSCTL_PREFIX = "sysctl.";
+    private final static Class<?>[] OPTION_CLASSES = {ChannelOption.class, SctpChannelOption.class};
+
+    private PerfMatrix() {
+    }
+
+    public static String usage() {
+        return "Usage: PerfMain [--config <file.properties>] [--<setting> <value>[,<value>...]]...\n" +
+                "Settings:\n" +
+                "  transport                " + transportIds() + '\n' +
+                "  mode                     latency, fixed-rate, throughput\n" +
+                "  echo                     in-place, copy\n" +
+                "  flushStrategy            batch, per-message, every-n, interval\n" +
+                "  flushEvery               frames between flushes of every-n\n" +
+                "  flushIntervalMicros      micro secs between flushes of interval\n" +
+                "  sctpStreamSelection      round-robin, key-affinity, least-queued\n" +
+                "  sctpSessions             sessions of key-affinity, every one keeps to one stream\n" +
+                "  sctpUnorderedStreams     highest SCTP streams sent unordered, 0 for all ordered\n" +
+                "  allocator                " + allocatorIds() + '\n' +
+                "  poolArenas               heap and direct arenas of the pooled allocators\n" +
+                "  poolPageSize             page size of the pooled allocators, a power of 2 >= 4096\n" +
+                "  poolMaxOrder             pooled chunks are poolPageSize << poolMaxOrder bytes, 0 to 14\n" +
+                "  messages                 messages per connection in latency and fixed-rate mode\n" +
+                "  messagesPerSecond        rate per connection in fixed-rate mode\n" +
+                "  durationSeconds          sending window in throughput mode\n" +
+                "  frameSize                bytes per echo frame\n" +
+                "  warmupIterations         discarded runs before the measured ones\n" +
+                "  iterations               measured runs, reported individually and summarized\n" +
+                "  connections              client connections\n" +
+                "  clientThreads            client event loop threads, 0 for the Netty default\n" +
+                "  serverBossThreads        server accepting event loop threads, 0 for the Netty default\n" +
+                "  serverWorkerThreads      server event loop threads, 0 for the Netty default\n" +
+                "  polling                  select, busy-spin: NIO event loops spin on selectNow(), a core each\n" +
+                "  spinParkMicros           idle micro secs before a busy-spin event loop parks, 0 to never park\n" +
+                "  highestTrackableLatency  largest latency in nano secs the histograms record\n" +
+                "  significantDigits        histogram precision, 0 to 5\n" +
+                "  idleTimeoutMillis        how long to wait for a lost last ping\n" +
+                "  reportIntervalMillis     print the round trip percentiles of every interval, 0 for none\n" +
+                "  clockSource              nano-time, realtime\n" +
+                "  subtractClockOverhead    true to subtract the calibrated cost of a clock reading from latencies\n" +
+                "  option.<NAME>            channel option, e.g. option.SO_SNDBUF, option.SCTP_NODELAY,\n" +
+                "                           option.SCTP_INIT_MAXSTREAMS as <inbound>:<outbound>\n" +
+                "  sysctl.<NAME>            kernel parameter set for the run and restored afterwards, needs root,\n" +
+                "                           e.g. sysctl.net.sctp.sack_timeout, sysctl.net.sctp.max_burst\n" +
+                "  resultsDir               directory for a result file of every configuration,\n" +
+                "                           plus a row of every configuration in results.csv and results.jsonl\n" +
+                "  baseline                 results.csv of an earlier run, fails the run on a regression\n" +
+                "  regressionThresholdPercent  tolerated growth of the rtt percentiles, drop of msgs/sec\n" +
+                "Every combination of the given values is run, command line settings override the file.";
+    }
+
+    private static String transportIds() {
+        StringBuilder sb = new StringBuilder();
+        for (Transport transport : Transport.values()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(transport.id());
+        }
+        return sb.toString();
+    }
+
+    private static String allocatorIds() {
+        StringBuilder sb = new StringBuilder();
+        for (Allocator allocator : Allocator.values()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(allocator.id());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse the command line arguments into the configurations to run.
+     *
+     * @param args command line arguments.
+     * @return one configuration for every combination of the given values, in argument order.
+     * @throws IllegalArgumentException on an unknown setting or an invalid value.
+     * @throws IOException if a --config file can not be read.
+     */
+    public static List<PerfConfig> parse(String[] args) throws IOException {
+        Map<String, String> settings = new LinkedHashMap<String, String>();
+        Map<String, String> commandLine = new LinkedHashMap<String, String>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --<setting> <value> at " + args[i]);
+            }
+
+            String name = args[i].substring(2);
+            String value = args[++i];
+            if ("config".equals(name)) {
+                settings.putAll(load(value));
+            } else {
+                commandLine.remove(name);
+                commandLine.put(name, value);
+            }
+        }
+
+        // command line settings override the files wherever they were given
+        for (Map.Entry<String, String> setting : commandLine.entrySet()) {
+            settings.remove(setting.getKey());
+            settings.put(setting.getKey(), setting.getValue());
+        }
+        return expand(settings);
+    }
+
+    private static Map<String, String> load(String file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        Map<String, String> settings = new LinkedHashMap<String, String>();
+        for (String name : new TreeSet<String>(properties.stringPropertyNames())) {
+            settings.put(name, properties.getProperty(name).trim());
+        }
+        return settings;
+    }
+
+    private static List<PerfConfig> expand(Map<String, String> settings) {
+        List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+        combinations.add(new LinkedHashMap<String, String>());
+
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            List<Map<String, String>> expanded = new ArrayList<Map<String, String>>();
+            for (Map<String, String> combination : combinations) {
+                for (String value : setting.getValue().split(",")) {
+                    Map<String, String> next = new LinkedHashMap<String, String>(combination);
+                    next.put(setting.getKey(), value.trim());
+                    expanded.add(next);
+                }
+            }
+            combinations = expanded;
+        }
+
+        List<PerfConfig> configs = new ArrayList<PerfConfig>(combinations.size());
+        for (Map<String, String> combination : combinations) {
+            PerfConfig config = new PerfConfig();
+            StringBuilder label = new StringBuilder();
+            for (Map.Entry<String, String> setting : combination.entrySet()) {
+                apply(config, setting.getKey(), setting.getValue());
+                if (settings.get(setting.getKey()).contains(",")) {
+                    if (label.length() > 0) {
+                        label.append(", ");
+                    }
+                    label.append(setting.getKey()).append('=').append(setting.getValue());
+                }
+            }
+            configs.add(config.label(label.toString()));
+        }
+        return configs;
+    }
+
+    private static void apply(PerfConfig config, String name, String value) {
+        if ("transport".equals(name)) {
+            config.transport(Transport.forId(value));
+        } else if ("mode".equals(name)) {
+            config.mode(PerfConfig.Mode.forId(value));
+        } else if ("echo".equals(name)) {
+            config.echo(PerfConfig.Echo.forId(value));
+        } else if ("flushStrategy".equals(name)) {
+            config.flushStrategy(FlushStrategy.forId(value));
+        } else if ("flushEvery".equals(name)) {
+            config.flushEvery(Integer.parseInt(value));
+        } else if ("flushIntervalMicros".equals(name)) {
+            config.flushIntervalMicros(Long.parseLong(value));
+        } else if ("sctpStreamSelection".equals(name)) {
+            config.sctpStreamSelection(StreamSelection.forId(value));
+        } else if ("sctpSessions".equals(name)) {
+            config.sctpSessions(Integer.parseInt(value));
+        } else if ("sctpUnorderedStreams".equals(name)) {
+            config.sctpUnorderedStreams(Integer.parseInt(value));
+        } else if ("allocator".equals(name)) {
+            config.allocator(Allocator.forId(value));
+        } else if ("poolArenas".equals(name)) {
+            config.poolArenas(Integer.parseInt(value));
+        } else if ("poolPageSize".equals(name)) {
+            config.poolPageSize(Integer.parseInt(value));
+        } else if ("poolMaxOrder".equals(name)) {
+            config.poolMaxOrder(Integer.parseInt(value));
+        } else if ("messages".equals(name)) {
+            config.messages(Integer.parseInt(value));
+        } else if ("messagesPerSecond".equals(name)) {
+            config.messagesPerSecond(Integer.parseInt(value));
+        } else if ("durationSeconds".equals(name)) {
+            config.durationSeconds(Long.parseLong(value));
+        } else if ("frameSize".equals(name)) {
+            config.frameSize(Integer.parseInt(value));
+        } else if ("warmupIterations".equals(name)) {
+            config.warmupIterations(Integer.parseInt(value));
+        } else if ("iterations".equals(name)) {
+            config.iterations(Integer.parseInt(value));
+        } else if ("connections".equals(name)) {
+            config.connections(Integer.parseInt(value));
+        } else if ("clientThreads".equals(name)) {
+            config.clientThreads(Integer.parseInt(value));
+        } else if ("serverBossThreads".equals(name)) {
+            config.serverBossThreads(Integer.parseInt(value));
+        } else if ("serverWorkerThreads".equals(name)) {
+            config.serverWorkerThreads(Integer.parseInt(value));
+        } else if ("polling".equals(name)) {
+            config.polling(PerfConfig.Polling.forId(value));
+        } else if ("spinParkMicros".equals(name)) {
+            config.spinParkMicros(Long.parseLong(value));
+        } else if ("highestTrackableLatency".equals(name)) {
+            config.highestTrackableLatency(Long.parseLong(value));
+        } else if ("significantDigits".equals(name)) {
+            config.significantDigits(Integer.parseInt(value));
+        } else if ("idleTimeoutMillis".equals(name)) {
+            config.idleTimeoutMillis(Long.parseLong(value));
+        } else if ("reportIntervalMillis".equals(name)) {
+            config.reportIntervalMillis(Long.parseLong(value));
+        } else if ("clockSource".equals(name)) {
+            config.clockSource(ClockSource.forId(value));
+        } else if ("subtractClockOverhead".equals(name)) {
+            config.subtractClockOverhead(parseBoolean(name, value));
+        } else if ("resultsDir".equals(name)) {
+            config.resultsDir(value);
+        } else if ("baseline".equals(name)) {
+            config.baseline(value);
+        } else if ("regressionThresholdPercent".equals(name)) {
+            config.regressionThresholdPercent(Double.parseDouble(value));
+        } else if (name.startsWith(OPTION_PREFIX)) {
+            applyOption(config, name.substring(OPTION_PREFIX.length()), value);
+        } else if (name.startsWith(SYSCTL_PREFIX)) {
+            config.sysctl(name.substring(SYSCTL_PREFIX.length()), value);
+        } else {
+            throw new IllegalArgumentException("Unknown setting " + name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void applyOption(PerfConfig config, String name, String value) {
+        for (Class<?> optionClass : OPTION_CLASSES) {
+            try {
+                Field field = optionClass.getField(name);
+                if (!Modifier.isStatic(field.getModifiers()) ||
+                        !ChannelOption.class.isAssignableFrom(field.getType())) {
+                    continue;
+                }
+
+                Type valueType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+                config.option((ChannelOption<Object>) field.get(null), parseOptionValue(name, valueType, value));
+                return;
+            } catch (NoSuchFieldException e) {
+                // try the next option class
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("Unknown channel option " + name);
+    }
+
+    /**
+     * Unlike {@link Boolean#parseBoolean(String)} a typo is rejected rather than taken as false.
+     */
+    private static boolean parseBoolean(String name, String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new IllegalArgumentException(name + " expects true or false, got " + value);
+    }
+
+    private static Object parseOptionValue(String name, Type valueType, String value) {
+        if (valueType == Boolean.class) {
+            return parseBoolean(name, value);
+        }
+        if (valueType == Integer.class) {
+            return Integer.valueOf(value);
+        }
+        if (valueType == Long.class) {
+            return Long.valueOf(value);
+        }
+        if (valueType == InitMaxStreams.class) {
+            String[] streams = value.split(":");
+            if (streams.length != 2) {
+                throw new IllegalArgumentException(name + " expects <inbound>:<outbound>, got " + value);
+            }
+            return InitMaxStreams.create(Integer.parseInt(streams[0]), Integer.parseInt(streams[1]));
+        }
+        throw new IllegalArgumentException("Channel option " + name + " of type " + valueType +
+                " can not be set from the command line, supported are " +
+                Arrays.asList("Boolean", "Integer", "Long", "InitMaxStreams"));
+    }
+}
@@ -0,0 +1,323 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.perf.collection.LogLinearHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The numbers of one configuration with its measured iterations merged, written as one CSV row or one JSON
+ * object per configuration. A stored CSV file serves as the {@link Baseline} later runs are checked against.
+ *
+ * Latencies are in nano secs. Values a mode does not measure, e.g. the round trip percentiles in throughput mode,
+ * are NaN, written as an empty CSV field and as JSON null.
+ */
+public final class ResultSummary {
+    /**
+     * Columns telling the configurations apart, every setting of a {@link PerfConfig} that can change what is
+     * measured, the rest are measured values. The target rate is targetMessagesPerSecond, messagesPerSecond is the
+     * rate measured. The label only names the swept settings, which differ from one matrix to the next, so it is
+     * left out of the {@link #key()}.
+     */
+    final static List<String> KEY_COLUMNS = Arrays.asList(
+            "transport", "mode", "echo", "allocator", "poolArenas", "poolPageSize", "poolMaxOrder", "flushStrategy",
+            "flushEvery", "flushIntervalMicros", "sctpStreamSelection", "sctpSessions", "sctpUnorderedStreams",
+            "messages", "targetMessagesPerSecond", "durationSeconds", "frameSize", "warmupIterations", "iterations",
+            "connections", "clientThreads", "serverBossThreads", "serverWorkerThreads", "polling", "spinParkMicros",
+            "clockSource", "subtractClockOverhead", "highestTrackableLatency", "significantDigits",
+            "idleTimeoutMillis", "reportIntervalMillis", "options", "sysctls", "label");
+    final static List<String> VALUE_COLUMNS = Arrays.asList(
+            "sent", "received", "lost", "reordered", "rttMean", "rtt50", "rtt99", "rtt9999", "rttMax",
+            "messagesPerSecond", "megabytesPerSecond", "allocatedBytesPerMessage", "flushesPerMessage",
+            "clockOverhead", "clockGranularity", "serverAllocatedBytesPerMessage");
+
+    private final Map<String, String> keys = new LinkedHashMap<String, String>();
+    private final Map<String, Double> values = new LinkedHashMap<String, Double>();
+
+    private ResultSummary() {
+    }
+
+    /**
+     * Summarize the measured iterations of a configuration.
+     *
+     * @param config  the configuration run.
+     * @param results {@link LatencyResult}s or {@link Throughput}s, depending on the {@link PerfConfig#mode()}.
+     * @return the summary, latency results merged, throughput results averaged.
+     */
+    static ResultSummary of(PerfConfig config, List<Object> results) {
+        ResultSummary summary = new ResultSummary();
+        summary.keys.put("transport", config.transport().id());
+        summary.keys.put("mode", config.mode().id());
+        summary.keys.put("echo", config.echo().id());
+        summary.keys.put("allocator", config.allocator().id());
+        summary.keys.put("poolArenas", String.valueOf(config.poolArenas()));
+        summary.keys.put("poolPageSize", String.valueOf(config.poolPageSize()));
+        summary.keys.put("poolMaxOrder", String.valueOf(config.poolMaxOrder()));
+        summary.keys.put("flushStrategy", config.flushStrategy().id());
+        summary.keys.put("flushEvery", String.valueOf(config.flushEvery()));
+        summary.keys.put("flushIntervalMicros", String.valueOf(config.flushIntervalMicros()));
+        summary.keys.put("sctpStreamSelection", config.sctpStreamSelection().id());
+        summary.keys.put("sctpSessions", String.valueOf(config.sctpSessions()));
+        summary.keys.put("sctpUnorderedStreams", String.valueOf(config.sctpUnorderedStreams()));
+        summary.keys.put("messages", String.valueOf(config.messages()));
+        summary.keys.put("targetMessagesPerSecond", String.valueOf(config.messagesPerSecond()));
+        summary.keys.put("durationSeconds", String.valueOf(config.durationSeconds()));
+        summary.keys.put("frameSize", String.valueOf(config.frameSize()));
+        summary.keys.put("warmupIterations", String.valueOf(config.warmupIterations()));
+        summary.keys.put("iterations", String.valueOf(config.iterations()));
+        summary.keys.put("connections", String.valueOf(config.connections()));
+        summary.keys.put("clientThreads", String.valueOf(config.clientThreads()));
+        summary.keys.put("serverBossThreads", String.valueOf(config.serverBossThreads()));
+        summary.keys.put("serverWorkerThreads", String.valueOf(config.serverWorkerThreads()));
+        summary.keys.put("polling", config.polling().id());
+        summary.keys.put("spinParkMicros", String.valueOf(config.spinParkMicros()));
+        summary.keys.put("clockSource", config.clockSource().id());
+        summary.keys.put("subtractClockOverhead", String.valueOf(config.subtractClockOverhead()));
+        summary.keys.put("highestTrackableLatency", String.valueOf(config.highestTrackableLatency()));
+        summary.keys.put("significantDigits", String.valueOf(config.significantDigits()));
+        summary.keys.put("idleTimeoutMillis", String.valueOf(config.idleTimeoutMillis()));
+        summary.keys.put("reportIntervalMillis", String.valueOf(config.reportIntervalMillis()));
+        summary.keys.put("options", config.options().toString());
+        summary.keys.put("sysctls", config.sysctls().toString());
+        summary.keys.put("label", config.label());
+        for (String column : VALUE_COLUMNS) {
+            summary.values.put(column, Double.NaN);
+        }
+
+        if (config.mode() == PerfConfig.Mode.THROUGHPUT) {
+            double received = 0.0d;
+            double messagesPerSecond = 0.0d;
+            double bytesPerSecond = 0.0d;
+            double allocatedBytesPerMessage = 0.0d;
+            double serverAllocatedBytesPerMessage = 0.0d;
+            double flushesPerMessage = 0.0d;
+            for (Object result : results) {
+                Throughput throughput = (Throughput) result;
+                received += throughput.messages();
+                messagesPerSecond += throughput.messagesPerSecond() / results.size();
+                bytesPerSecond += throughput.bytesPerSecond() / results.size();
+                allocatedBytesPerMessage += throughput.allocatedBytesPerMessage() / results.size();
+                serverAllocatedBytesPerMessage += throughput.serverAllocatedBytesPerMessage() / results.size();
+                flushesPerMessage += throughput.flushesPerMessage() / results.size();
+            }
+            summary.values.put("received", received);
+            summary.values.put("messagesPerSecond", messagesPerSecond);
+            summary.values.put("megabytesPerSecond", bytesPerSecond / (1024 * 1024));
+            summary.values.put("allocatedBytesPerMessage", allocatedBytesPerMessage);
+            summary.values.put("serverAllocatedBytesPerMessage", serverAllocatedBytesPerMessage);
+            summary.values.put("flushesPerMessage", flushesPerMessage);
+            return summary;
+        }
+
+        List<LatencyResult> latencies = new ArrayList<LatencyResult>(results.size());
+        for (Object result : results) {
+            latencies.add((LatencyResult) result);
+        }
+        LatencyResult all = LatencyResult.merge(latencies);
+        LogLinearHistogram roundTrip = all.roundTrip();
+        summary.values.put("sent", (double) all.sent());
+        summary.values.put("received", (double) all.received());
+        summary.values.put("lost", (double) all.lost());
+        summary.values.put("reordered", (double) all.reordered());
+        if (roundTrip.getCount() > 0L) {
+            summary.values.put("rttMean", roundTrip.getMean());
+            summary.values.put("rtt50", (double) roundTrip.getUpperBoundForFactor(0.5d));
+            summary.values.put("rtt99", (double) roundTrip.getTwoNinesUpperBound());
+            summary.values.put("rtt9999", (double) roundTrip.getFourNinesUpperBound());
+            summary.values.put("rttMax", (double) roundTrip.getMax());
+        }
+        summary.values.put("messagesPerSecond", all.messagesPerSecond());
+        summary.values.put("megabytesPerSecond", all.messagesPerSecond() * config.frameSize() / (1024 * 1024));
+        summary.values.put("allocatedBytesPerMessage", all.allocatedBytesPerMessage());
+        summary.values.put("serverAllocatedBytesPerMessage", all.serverAllocatedBytesPerMessage());
+        summary.values.put("flushesPerMessage", all.flushesPerMessage());
+        if (all.clockCalibration() != null) {
+            summary.values.put("clockOverhead", all.clockCalibration().overheadNanos());
+            summary.values.put("clockGranularity", (double) all.clockCalibration().granularityNanos());
+        }
+        return summary;
+    }
+
+    /**
+     * Parse a row written by {@link #toCsv()}.
+     *
+     * @param header the column names, as written by {@link #csvHeader()}.
+     * @param fields the fields of the row.
+     * @return the summary of the row.
+     * @throws IllegalArgumentException if a key column is missing, e.g. in a results.csv written before the
+     * setting was added, or a value is no number.
+     */
+    static ResultSummary fromCsv(List<String> header, List<String> fields) {
+        if (header.size() != fields.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " fields, got " + fields);
+        }
+
+        ResultSummary summary = new ResultSummary();
+        for (String column : KEY_COLUMNS) {
+            summary.keys.put(column, fields.get(indexOf(header, column)));
+        }
+        for (String column : VALUE_COLUMNS) {
+            // values added later are missing from older baselines
+            if (!header.contains(column)) {
+                summary.values.put(column, Double.NaN);
+                continue;
+            }
+            String field = fields.get(indexOf(header, column));
+            summary.values.put(column, field.length() == 0 ? Double.NaN : Double.parseDouble(field));
+        }
+        return summary;
+    }
+
+    private static int indexOf(List<String> header, String column) {
+        int index = header.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Missing column " + column + " in " + header);
+        }
+        return index;
+    }
+
+    /**
+     * @return the settings telling this configuration apart, results of the same key are comparable.
+     */
+    public String key() {
+        Map<String, String> key = new LinkedHashMap<String, String>(keys);
+        key.remove("label");
+        return key.toString();
+    }
+
+    /**
+     * @param column one of the measured value columns, e.g. rtt99 or messagesPerSecond.
+     * @return the value, NaN if not measured.
+     */
+    public double value(String column) {
+        Double value = values.get(column);
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown column " + column);
+        }
+        return value;
+    }
+
+    /**
+     * @return a line of the final table of {@link PerfMain}, see its SUMMARY_FORMAT.
+     */
+    String summaryLine(String format) {
+        return String.format(format, keys.get("transport"), keys.get("mode"), keys.get("allocator"),
+                keys.get("flushStrategy"), keys.get("frameSize"), keys.get("connections"), format(value("rtt50"), 0),
+                format(value("rtt99"), 0), format(value("rtt9999"), 0), format(value("messagesPerSecond"), 0),
+                format(value("megabytesPerSecond"), 2), format(value("flushesPerMessage"), 4));
+    }
+
+    private static String format(double value, int decimals) {
+        return Double.isNaN(value) ? "-" : String.format("%." + decimals + "f", value);
+    }
+
+    /**
+     * @return the CSV header line matching {@link #toCsv()}.
+     */
+    static String csvHeader() {
+        StringBuilder sb = new StringBuilder();
+        for (String column : KEY_COLUMNS) {
+            sb.append(column).append(',');
+        }
+        for (String column : VALUE_COLUMNS) {
+            sb.append(column).append(',');
+        }
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * @return the summary as a CSV line, the label quoted as it holds commas.
+     */
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder();
+        for (String key : keys.values()) {
+            sb.append('"').append(key.replace("\"", "\"\"")).append('"').append(',');
+        }
+        for (Double value : values.values()) {
+            if (!value.isNaN()) {
+                sb.append(number(value));
+            }
+            sb.append(',');
+        }
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * @return the summary as a single line JSON object.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, String> key : keys.entrySet()) {
+            sb.append('"').append(key.getKey()).append("\":\"");
+            sb.append(key.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append("\",");
+        }
+        for (Map.Entry<String, Double> value : values.entrySet()) {
+            sb.append('"').append(value.getKey()).append("\":");
+            sb.append(value.getValue().isNaN() ? "null" : number(value.getValue())).append(',');
+        }
+        sb.setCharAt(sb.length() - 1, '}');
+        return sb.toString();
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE ?
+                String.valueOf((long) value) : String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    /**
+     * Split a CSV line written by {@link #toCsv()} into its fields.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
@@ -0,0 +1,91 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.perf.collection.LogLinearHistogram;
+
+/**
+ * Latencies of the messages received on one SCTP stream, to tell a stream suffering head-of-line blocking or
+ * uneven load from the others.
+ *
+ * The legs are keyed by the stream the message arrived on: client to server by the stream the client sent the
+ * message on, the round trip by the stream the server sent the echo back on.
+ */
+public final class StreamLatency {
+    private final int streamIdentifier;
+    private final LogLinearHistogram clientToServer;
+    private final LogLinearHistogram roundTrip;
+
+    public StreamLatency(int streamIdentifier, LogLinearHistogram clientToServer, LogLinearHistogram roundTrip) {
+        this.streamIdentifier = streamIdentifier;
+        this.clientToServer = clientToServer;
+        this.roundTrip = roundTrip;
+    }
+
+    /**
+     * @return the SCTP stream.
+     */
+    public int streamIdentifier() {
+        return streamIdentifier;
+    }
+
+    /**
+     * @return client send time to server receive time of the messages the server received on the stream.
+     */
+    public LogLinearHistogram clientToServer() {
+        return clientToServer;
+    }
+
+    /**
+     * @return client send time to client receive time of the echoes the client received on the stream.
+     */
+    public LogLinearHistogram roundTrip() {
+        return roundTrip;
+    }
+
+    /**
+     * Add the observations of the same stream of another run.
+     *
+     * @param other latencies of the same stream.
+     */
+    void addObservations(StreamLatency other) {
+        clientToServer.addObservations(other.clientToServer);
+        roundTrip.addObservations(other.roundTrip);
+    }
+
+    /**
+     * @return a copy to merge other runs into.
+     */
+    StreamLatency copy() {
+        StreamLatency copy = new StreamLatency(streamIdentifier, emptyCopyOf(clientToServer), emptyCopyOf(roundTrip));
+        copy.addObservations(this);
+        return copy;
+    }
+
+    private static LogLinearHistogram emptyCopyOf(LogLinearHistogram histogram) {
+        return new LogLinearHistogram(histogram.getHighestTrackableValue(), histogram.getSignificantDigits());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("stream %-5d client -> server count=%d, 50%%=%d, 99%%=%d, 99.99%%=%d;" +
+                " round trip count=%d, 50%%=%d, 99%%=%d, 99.99%%=%d", streamIdentifier,
+                clientToServer.getCount(), clientToServer.getUpperBoundForFactor(0.5d),
+                clientToServer.getTwoNinesUpperBound(), clientToServer.getFourNinesUpperBound(),
+                roundTrip.getCount(), roundTrip.getUpperBoundForFactor(0.5d),
+                roundTrip.getTwoNinesUpperBound(), roundTrip.getFourNinesUpperBound());
+    }
+}
@@ -0,0 +1,83 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.sctp.KeyAffinitySctpStreamSelector;
+import io.netty.handler.codec.sctp.LeastQueuedSctpStreamSelector;
+import io.netty.handler.codec.sctp.RoundRobinSctpStreamSelector;
+import io.netty.handler.codec.sctp.SctpStreamSelector;
+
+/**
+ * How the SCTP tests spread their frames over the streams of an association, by their command line name.
+ */
+public enum StreamSelection {
+    ROUND_ROBIN("round-robin") {
+        @Override
+        public SctpStreamSelector newSelector(PerfConfig config) {
+            return new RoundRobinSctpStreamSelector();
+        }
+    },
+    /**
+     * Every frame belongs to one of {@link PerfConfig#sctpSessions()} sessions, by its sequence number, and
+     * the frames of a session always use the same stream.
+     */
+    KEY_AFFINITY("key-affinity") {
+        @Override
+        public SctpStreamSelector newSelector(PerfConfig config) {
+            final int sessions = config.sctpSessions();
+            return new KeyAffinitySctpStreamSelector() {
+                @Override
+                protected int key(ByteBuf msg) {
+                    return (int) ((msg.getLong(msg.readerIndex()) & Long.MAX_VALUE) % sessions);
+                }
+            };
+        }
+    },
+    LEAST_QUEUED("least-queued") {
+        @Override
+        public SctpStreamSelector newSelector(PerfConfig config) {
+            return new LeastQueuedSctpStreamSelector();
+        }
+    };
+
+    private final String id;
+
+    StreamSelection(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return a new selector for the outbound streaming handler of one channel.
+     */
+    public abstract SctpStreamSelector newSelector(PerfConfig config);
+
+    /**
+     * @return the command line name of the stream selection.
+     */
+    public String id() {
+        return id;
+    }
+
+    public static StreamSelection forId(String id) {
+        for (StreamSelection selection : values()) {
+            if (selection.id.equals(id)) {
+                return selection;
+            }
+        }
+        throw new IllegalArgumentException("Unknown stream selection " + id);
+    }
+}
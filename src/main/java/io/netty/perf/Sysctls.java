@@ -0,0 +1,102 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sets the {@link PerfConfig#sysctls()} of a run through /proc/sys and restores the previous values afterwards.
+ * Writing them needs root, and they apply to the whole host, e.g. net.sctp.sack_timeout to every SCTP
+ * association created while it is set.
+ */
+final class Sysctls {
+    private final static String PROC_SYS = "/proc/sys/";
+
+    private final Map<String, String> previous = new LinkedHashMap<String, String>();
+
+    private Sysctls() {
+    }
+
+    /**
+     * Set the given kernel parameters, restoring the ones already set if one fails.
+     *
+     * @param sysctls values by sysctl name.
+     * @return the previous values, to be restored after the run.
+     * @throws IOException if a parameter does not exist or can not be written.
+     */
+    static Sysctls apply(Map<String, String> sysctls) throws IOException {
+        Sysctls applied = new Sysctls();
+        try {
+            for (Map.Entry<String, String> sysctl : sysctls.entrySet()) {
+                String previous = read(sysctl.getKey());
+                write(sysctl.getKey(), sysctl.getValue());
+                applied.previous.put(sysctl.getKey(), previous);
+            }
+        } catch (IOException e) {
+            applied.restore();
+            throw e;
+        }
+        return applied;
+    }
+
+    /**
+     * Restore the previous values, in reverse order.
+     */
+    void restore() {
+        List<String> names = new ArrayList<String>(previous.keySet());
+        for (int i = names.size() - 1; i >= 0; i--) {
+            try {
+                write(names.get(i), previous.get(names.get(i)));
+            } catch (IOException e) {
+                System.err.println("Failed to restore sysctl " + names.get(i) + ": " + e.getMessage());
+            }
+        }
+        previous.clear();
+    }
+
+    private static File file(String name) {
+        return new File(PROC_SYS + name.replace('.', '/'));
+    }
+
+    private static String read(String name) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file(name)), "US-ASCII"));
+        try {
+            String value = in.readLine();
+            return value == null ? "" : value.trim();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(String name, String value) throws IOException {
+        OutputStream out = new FileOutputStream(file(name));
+        try {
+            out.write((value + '\n').getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages and bytes received over a timed window.
+ */
+public final class Throughput {
+    private final long messages;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final long allocatedBytes;
+    private final long serverAllocatedBytes;
+    private final long flushes;
+
+    public Throughput(long messages, long bytes, long elapsedNanos, long allocatedBytes, long serverAllocatedBytes,
+                      long flushes) {
+        if (elapsedNanos <= 0L) {
+            throw new IllegalArgumentException("elapsedNanos must be positive");
+        }
+        this.messages = messages;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.serverAllocatedBytes = serverAllocatedBytes;
+        this.flushes = flushes;
+    }
+
+    public long messages() {
+        return messages;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return heap bytes allocated by all threads of the JVM over the window, -1 if unknown.
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return heap bytes allocated per message received, NaN if unknown.
+     */
+    public double allocatedBytesPerMessage() {
+        if (allocatedBytes < 0L || messages == 0L) {
+            return Double.NaN;
+        }
+        return allocatedBytes / (double) messages;
+    }
+
+    /**
+     * @return heap bytes allocated by the event loop threads of the server over the window, -1 if unknown.
+     */
+    public long serverAllocatedBytes() {
+        return serverAllocatedBytes;
+    }
+
+    /**
+     * @return heap bytes the server allocated per message received, NaN if unknown.
+     */
+    public double serverAllocatedBytesPerMessage() {
+        if (serverAllocatedBytes < 0L || messages == 0L) {
+            return Double.NaN;
+        }
+        return serverAllocatedBytes / (double) messages;
+    }
+
+    /**
+     * @return flushes of the client send path and the echoing server over the window, each one is at most
+     * one write system call.
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    /**
+     * @return flushes per message received, NaN if nothing was received.
+     */
+    public double flushesPerMessage() {
+        if (messages == 0L) {
+            return Double.NaN;
+        }
+        return flushes / (double) messages;
+    }
+
+    public double messagesPerSecond() {
+        return messages * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public double bytesPerSecond() {
+        return bytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Throughput {\n");
+        sb.append(" messages=").append(messages).append(", ");
+        sb.append(" bytes=").append(bytes).append(", ");
+        sb.append(" elapsed=").append(elapsedNanos).append("ns");
+        sb.append("\n msgs/sec=").append(String.format("%.2f", messagesPerSecond())).append(", ");
+        sb.append(" bytes/sec=").append(String.format("%.2f", bytesPerSecond()));
+        if (allocatedBytes >= 0L) {
+            sb.append(", ");
+            sb.append(" allocated/msg=").append(String.format("%.2f", allocatedBytesPerMessage()));
+        }
+        if (serverAllocatedBytes >= 0L) {
+            sb.append(", ");
+            sb.append(" server allocated/msg=").append(String.format("%.2f", serverAllocatedBytesPerMessage()));
+        }
+        sb.append(", ");
+        sb.append(" flushes/msg=").append(String.format("%.4f", flushesPerMessage()));
+        sb.append("\n}");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The transports a {@link NettyLatencyTest} can run over, by their command line name.
+ */
+public enum Transport {
+    LOCAL("local") {
+        @Override
+        public NettyLatencyTest newTest(PerfConfig config) {
+            return new LocalLatencyTest(config);
+        }
+    },
+    NIO_TCP("nio-tcp") {
+        @Override
+        public NettyLatencyTest newTest(PerfConfig config) {
+            return new NioTcpLatencyTest(config);
+        }
+    },
+    OIO_TCP("oio-tcp") {
+        @Override
+        public NettyLatencyTest newTest(PerfConfig config) {
+            return new OioTcpLatencyTest(config);
+        }
+    },
+    NIO_UDP("nio-udp") {
+        @Override
+        public NettyLatencyTest newTest(PerfConfig config) {
+            return new NioUdpLatencyTest(config);
+        }
+    },
+    NIO_SCTP("nio-sctp") {
+        @Override
+        public NettyLatencyTest newTest(PerfConfig config) {
+            return new NioSctpLatencyTest(config);
+        }
+    },
+    OIO_SCTP("oio-sctp") {
+        @Override
+        public NettyLatencyTest newTest(PerfConfig config) {
+            return new OioSctpLatencyTest(config);
+        }
+    };
+
+    private final String id;
+
+    Transport(String id) {
+        this.id = id;
+    }
+
+    public abstract NettyLatencyTest newTest(PerfConfig config);
+
+    /**
+     * @return the command line name of the transport.
+     */
+    public String id() {
+        return id;
+    }
+
+    public static Transport forId(String id) {
+        for (Transport transport : values()) {
+            if (transport.id.equals(id)) {
+                return transport;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transport " + id);
+    }
+}
@@ -0,0 +1,78 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.sctp.SctpMessage;
+import io.netty.channel.sctp.nio.NioSctpChannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link NioSctpChannel} which sends an {@link SctpMessage} unordered if its {@link MessageInfo} says so.
+ * The channel of Netty 4.0.9 builds the outgoing {@link MessageInfo} from the stream and protocol identifiers
+ * only, so every message is delivered in order. Apart from the unordered flag the write is the same.
+ */
+public class UnorderedNioSctpChannel extends NioSctpChannel {
+
+    public UnorderedNioSctpChannel() {
+    }
+
+    public UnorderedNioSctpChannel(Channel parent, SctpChannel sctpChannel) {
+        super(parent, sctpChannel);
+    }
+
+    @Override
+    protected boolean doWriteMessage(Object msg, ChannelOutboundBuffer in) throws Exception {
+        SctpMessage packet = (SctpMessage) msg;
+        ByteBuf data = packet.content();
+        int dataLen = data.readableBytes();
+        if (dataLen == 0) {
+            return true;
+        }
+
+        ByteBufAllocator alloc = alloc();
+        boolean needsCopy = data.nioBufferCount() != 1;
+        if (!needsCopy && !data.isDirect() && alloc.isDirectBufferPooled()) {
+            needsCopy = true;
+        }
+        if (needsCopy) {
+            data = alloc.directBuffer(dataLen).writeBytes(data);
+        }
+        ByteBuffer nioData = data.nioBuffer();
+
+        final MessageInfo mi = MessageInfo.createOutgoing(association(), null, packet.streamIdentifier());
+        mi.payloadProtocolID(packet.protocolIdentifier());
+        mi.streamNumber(packet.streamIdentifier());
+        mi.unordered(packet.messageInfo() != null && packet.messageInfo().isUnordered());
+
+        final boolean done = javaChannel().send(nioData, mi) > 0;
+        if (needsCopy) {
+            // replace the message by the copy, so the copy is released
+            if (!done) {
+                in.current(new SctpMessage(mi, data));
+            } else {
+                in.current(data);
+            }
+        }
+        return done;
+    }
+}
@@ -0,0 +1,37 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.nio.sctp.SctpChannel;
+import io.netty.channel.sctp.nio.NioSctpServerChannel;
+
+import java.util.List;
+
+/**
+ * A {@link NioSctpServerChannel} whose accepted channels are {@link UnorderedNioSctpChannel}s.
+ */
+public class UnorderedNioSctpServerChannel extends NioSctpServerChannel {
+
+    @Override
+    protected int doReadMessages(List<Object> buf) throws Exception {
+        SctpChannel ch = javaChannel().accept();
+        if (ch == null) {
+            return 0;
+        }
+        buf.add(new UnorderedNioSctpChannel(this, ch));
+        return 1;
+    }
+}
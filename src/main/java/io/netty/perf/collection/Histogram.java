@@ -15,8 +15,6 @@ package io.netty.perf.collection;
  * under the License.
  */
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.Arrays;
 
 /**
@@ -29,9 +27,16 @@ public final class Histogram
 {
     private final long[] upperBounds;
     private final long[] counts;
+    private final long[] cumulativeCounts;
+    private long totalCount;
     private long minValue = Long.MAX_VALUE;
     private long maxValue = 0L;
 
+    // rebuilt by the first query after observations were added
+    private boolean indexed;
+    private int lastIndex;
+    private double mean;
+
     /**
      * Create a new Histogram with a provided list of interval bounds.
      *
@@ -43,6 +48,7 @@ public final class Histogram
 
         this.upperBounds = Arrays.copyOf(upperBounds, upperBounds.length);
         this.counts = new long[upperBounds.length];
+        this.cumulativeCounts = new long[upperBounds.length];
     }
 
     private void validateBounds(final long[] upperBounds)
@@ -123,7 +129,9 @@ public final class Histogram
         if (value <= upperBounds[high])
         {
             counts[high]++;
+            totalCount++;
             trackRange(value);
+            indexed = false;
 
             return true;
         }
@@ -169,9 +177,15 @@ public final class Histogram
         {
             counts[i] += histogram.counts[i];
         }
+        totalCount += histogram.totalCount;
+        indexed = false;
 
-        trackRange(histogram.minValue);
-        trackRange(histogram.maxValue);
+        // an empty histogram still holds the sentinel min/max values
+        if (histogram.minValue <= histogram.maxValue)
+        {
+            trackRange(histogram.minValue);
+            trackRange(histogram.maxValue);
+        }
     }
 
     /**
@@ -181,6 +195,8 @@ public final class Histogram
     {
         maxValue = 0L;
         minValue = Long.MAX_VALUE;
+        totalCount = 0L;
+        indexed = false;
 
         for (int i = 0, size = counts.length; i < size; i++)
         {
@@ -195,14 +211,7 @@ public final class Histogram
      */
     public long getCount()
     {
-        long count = 0L;
-
-        for (int i = 0, size = counts.length; i < size; i++)
-        {
-            count += counts[i];
-        }
-
-        return count;
+        return totalCount;
     }
 
     /**
@@ -230,35 +239,20 @@ public final class Histogram
      *
      * The mean is calculated by the summing the mid points of each interval multiplied by the count
      * for that interval, then dividing by the total count of observations.  The max and min are
-     * considered for adjusting the top and bottom bin when calculating the mid point.
+     * considered for adjusting the top and bottom bin when calculating the mid point. It is computed
+     * along with the cumulative counts, once after observations were added.
      *
      * @return the mean of all recorded observations.
      */
-    public BigDecimal getMean()
+    public double getMean()
     {
-        if (0L == getCount())
-        {
-            return BigDecimal.ZERO;
-        }
-
-        long lowerBound = counts[0] > 0L ? minValue : 0L;
-        BigDecimal total = BigDecimal.ZERO;
-
-        for (int i = 0, size = upperBounds.length; i < size; i++)
+        if (0L == totalCount)
         {
-            if (0L != counts[i])
-            {
-                long upperBound = Math.min(upperBounds[i], maxValue);
-                long midPoint = lowerBound + ((upperBound - lowerBound) / 2L);
-
-                BigDecimal intervalTotal = new BigDecimal(midPoint).multiply(new BigDecimal(counts[i]));
-                total = total.add(intervalTotal);
-            }
-
-            lowerBound = Math.max(upperBounds[i] + 1L, minValue);
+            return 0.0d;
         }
 
-        return total.divide(new BigDecimal(getCount()), 2, RoundingMode.HALF_UP);
+        buildIndex();
+        return mean;
     }
 
     /**
@@ -282,35 +276,124 @@ public final class Histogram
     }
 
     /**
-     * Get the interval upper bound for a given factor of the observation population.
+     * Get the interval upper bound for a given factor of the observation population, never above
+     * the maximum observed value.
      *
-     * @param factor representing the size of the population.
+     * @param factor representing the size of the population, 1.0 gives the max.
      * @return the interval upper bound.
      */
     public long getUpperBoundForFactor(final double factor)
     {
-        if (0.0d >= factor || factor >= 1.0d)
+        return getValueAtFactor(factor, false);
+    }
+
+    /**
+     * Get the value below or at which a given factor of the observation population falls.
+     *
+     * @param factor      representing the size of the population, 1.0 gives the max.
+     * @param interpolate true to interpolate linearly between the bounds of the interval the value falls in,
+     *                    assuming its observations are spread evenly, false for the interval upper bound.
+     * @return the value for the factor, clamped to the observed min and max.
+     */
+    public long getValueAtFactor(final double factor, final boolean interpolate)
+    {
+        if (0.0d >= factor || factor > 1.0d)
+        {
+            throw new IllegalArgumentException("factor must be > 0.0 and <= 1.0");
+        }
+
+        if (0L == totalCount)
         {
-            throw new IllegalArgumentException("factor must be >= 0.0 and <= 1.0");
+            return 0L;
         }
 
-        final long totalCount = getCount();
-        final long tailTotal = totalCount - Math.round(totalCount * factor);
-        long tailCount = 0L;
+        buildIndex();
 
-        for (int i = counts.length - 1; i >= 0; i--)
+        final long rank = Math.max(1L, (long) Math.ceil(totalCount * factor));
+        final int index = firstIndexAbove(rank - 1L);
+        final long upperBound = Math.min(upperBounds[index], maxValue);
+        if (!interpolate)
         {
-            if (0L != counts[i])
+            return upperBound;
+        }
+
+        final long lowerBound = Math.max(0 == index ? 0L : upperBounds[index - 1] + 1L, minValue);
+        final long below = 0 == index ? 0L : cumulativeCounts[index - 1];
+
+        return lowerBound + (long) ((upperBound - lowerBound) * ((rank - below) / (double) counts[index]));
+    }
+
+    /**
+     * Get the values for several factors of the observation population at once, e.g. p50, p90, p99.9,
+     * p99.999 and max for a report, sharing one pass over the intervals to index them.
+     *
+     * @param factors     representing sizes of the population, each > 0.0 and <= 1.0.
+     * @param interpolate true to interpolate inside the intervals, see {@link #getValueAtFactor(double, boolean)}.
+     * @return the value for every factor, in the same order.
+     */
+    public long[] getValuesAtFactors(final double[] factors, final boolean interpolate)
+    {
+        final long[] values = new long[factors.length];
+        for (int i = 0; i < factors.length; i++)
+        {
+            values[i] = getValueAtFactor(factors[i], interpolate);
+        }
+
+        return values;
+    }
+
+    private int firstIndexAbove(final long count)
+    {
+        int low = 0;
+        int high = lastIndex;
+
+        while (low < high)
+        {
+            int mid = low + ((high - low) >> 1);
+            if (cumulativeCounts[mid] <= count)
             {
-                tailCount += counts[i];
-                if (tailCount >= tailTotal)
-                {
-                    return upperBounds[i];
-                }
+                low = mid + 1;
             }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sum the counts into the cumulative index and the mean, once after observations were added.
+     */
+    private void buildIndex()
+    {
+        if (indexed)
+        {
+            return;
+        }
+
+        long cumulative = 0L;
+        double total = 0.0d;
+        long lowerBound = counts[0] > 0L ? minValue : 0L;
+
+        for (int i = 0, size = counts.length; i < size; i++)
+        {
+            final long count = counts[i];
+            if (0L != count)
+            {
+                final long upperBound = Math.min(upperBounds[i], maxValue);
+                total += (lowerBound + ((upperBound - lowerBound) / 2L)) * (double) count;
+                cumulative += count;
+                lastIndex = i;
+            }
+            cumulativeCounts[i] = cumulative;
+
+            lowerBound = Math.max(upperBounds[i] + 1L, minValue);
         }
 
-        return 0L;
+        mean = total / totalCount;
+        indexed = true;
     }
 
     @Override
@@ -322,7 +405,7 @@ public final class Histogram
 
         sb.append(" min=").append(getMin()).append(", ");
         sb.append(" max=").append(getMax()).append(", ");
-        sb.append(" mean=").append(getMean()).append(", ");
+        sb.append(" mean=").append(String.format("%.2f", getMean())).append(", ");
         sb.append(" 99%=").append(getTwoNinesUpperBound()).append(", ");
         sb.append(" 99.99%=").append(getFourNinesUpperBound());
 
@@ -0,0 +1,98 @@
+package io.netty.perf.collection;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records observations from many threads into per-thread {@link LogLinearHistogram}s.
+ *
+ * Each recording thread owns its own Histogram so the hot path takes no locks, uses no atomics and
+ * allocates nothing once the thread has recorded its first value. The per-thread Histograms are only
+ * merged when a snapshot is taken.
+ */
+public final class HistogramRecorder
+{
+    private final long highestTrackableValue;
+    private final int significantDigits;
+    private final List<LogLinearHistogram> writers = new CopyOnWriteArrayList<LogLinearHistogram>();
+    private final ThreadLocal<LogLinearHistogram> writer = new ThreadLocal<LogLinearHistogram>()
+    {
+        @Override
+        protected LogLinearHistogram initialValue()
+        {
+            LogLinearHistogram histogram = new LogLinearHistogram(highestTrackableValue, significantDigits);
+            writers.add(histogram);
+            return histogram;
+        }
+    };
+
+    /**
+     * Create a new recorder whose Histograms share the provided range and precision.
+     *
+     * @param highestTrackableValue the largest value that can be recorded.
+     * @param significantDigits     number of significant decimal digits kept for every value.
+     */
+    public HistogramRecorder(final long highestTrackableValue, final int significantDigits)
+    {
+        // fail fast on bad settings rather than on the first recording thread
+        new LogLinearHistogram(highestTrackableValue, significantDigits);
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+    }
+
+    /**
+     * Add an observation to the calling thread's Histogram.
+     *
+     * @param value for the observation to be added.
+     * @return return true if in the trackable range otherwise false.
+     */
+    public boolean record(final long value)
+    {
+        return writer.get().addObservation(value);
+    }
+
+    /**
+     * Merge the observations of all recording threads into a new Histogram.
+     *
+     * The result is exact once the recording threads have been quiesced, e.g. after waiting on a latch
+     * they count down. Taken while threads are still recording it may miss in-flight observations.
+     *
+     * @return a new LogLinearHistogram holding the observations of all threads.
+     */
+    public LogLinearHistogram snapshot()
+    {
+        LogLinearHistogram snapshot = new LogLinearHistogram(highestTrackableValue, significantDigits);
+        for (LogLinearHistogram histogram : writers)
+        {
+            snapshot.addObservations(histogram);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Clear the Histograms of all recording threads. Recording threads must be quiesced.
+     */
+    public void clear()
+    {
+        for (LogLinearHistogram histogram : writers)
+        {
+            histogram.clear();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.netty.perf.collection;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Double buffered {@link LogLinearHistogram} for interval reporting: a single recording thread writes into the
+ * active Histogram while a reporting thread swaps in the inactive one and drains the observations of the interval
+ * that just ended, so recording never pauses.
+ *
+ * The writer takes no locks. It marks every observation with two volatile writes of a sequence number, odd while it
+ * is recording, which is all the reporter needs to wait for an observation that still went to the old Histogram.
+ */
+public final class IntervalHistogram
+{
+    private volatile LogLinearHistogram active;
+    private LogLinearHistogram inactive;
+    private volatile long sequence;
+
+    /**
+     * Create a new IntervalHistogram, both Histograms share the provided range and precision.
+     *
+     * @param highestTrackableValue the largest value that can be recorded.
+     * @param significantDigits     number of significant decimal digits kept for every value.
+     */
+    public IntervalHistogram(final long highestTrackableValue, final int significantDigits)
+    {
+        active = new LogLinearHistogram(highestTrackableValue, significantDigits);
+        inactive = new LogLinearHistogram(highestTrackableValue, significantDigits);
+    }
+
+    /**
+     * Add an observation to the active Histogram, only ever called by the one recording thread.
+     *
+     * @param value for the observation to be added.
+     * @return return true if in the trackable range otherwise false.
+     */
+    public boolean addObservation(final long value)
+    {
+        final long start = sequence + 1L;
+        sequence = start;
+        try
+        {
+            return active.addObservation(value);
+        }
+        finally
+        {
+            sequence = start + 1L;
+        }
+    }
+
+    /**
+     * End the current interval: swap the Histograms, wait for an observation in flight to complete, and move the
+     * observations of the interval into the given Histogram.
+     *
+     * @param interval receives the observations recorded since the previous call, must have matching intervals.
+     */
+    public synchronized void drainTo(final LogLinearHistogram interval)
+    {
+        final LogLinearHistogram previous = active;
+        active = inactive;
+
+        final long observed = sequence;
+        if ((observed & 1L) != 0L)
+        {
+            while (sequence == observed)
+            {
+                Thread.yield();
+            }
+        }
+
+        interval.addObservations(previous);
+        previous.clear();
+        inactive = previous;
+    }
+}
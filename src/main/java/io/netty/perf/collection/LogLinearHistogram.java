@@ -0,0 +1,522 @@
+package io.netty.perf.collection;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Histogram with log-linear intervals covering values from 0 to a highest trackable value while
+ * keeping a fixed number of significant decimal digits of precision.
+ *
+ * Values are grouped into buckets of power-of-two magnitude, and every bucket is split into linear
+ * sub-buckets fine enough for the requested precision. The interval index of a value is computed in
+ * O(1) from its leading zero count, and the memory footprint only depends on the precision and the
+ * highest trackable value, e.g. 3 significant digits up to 10 seconds in nanoseconds takes ~200KB.
+ */
+public final class LogLinearHistogram
+{
+    private final long highestTrackableValue;
+    private final int significantDigits;
+
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+
+    private final long[] counts;
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue = 0L;
+    // sum of the interval mid points for every observation, the mean before clamping to the min and max
+    private double midPointTotal;
+
+    // rebuilt by the first query after observations were added, from the lowest interval they changed
+    private long[] cumulativeCounts;
+    private int changedIndex;
+    private int firstIndex;
+    private int lastIndex;
+
+    /**
+     * Create a new LogLinearHistogram.
+     *
+     * @param highestTrackableValue the largest value that can be recorded, at least 2.
+     * @param significantDigits     number of significant decimal digits kept for every value, 0 to 5.
+     */
+    public LogLinearHistogram(final long highestTrackableValue, final int significantDigits)
+    {
+        if (highestTrackableValue < 2L)
+        {
+            throw new IllegalArgumentException("highestTrackableValue must be >= 2");
+        }
+
+        if (significantDigits < 0 || significantDigits > 5)
+        {
+            throw new IllegalArgumentException("significantDigits must be between 0 and 5");
+        }
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+
+        long largestValueWithSingleUnitResolution = 2L * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+        subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+        int subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+        subBucketHalfCount = subBucketCount / 2;
+        subBucketMask = subBucketCount - 1;
+
+        int bucketCount = 1;
+        long smallestUntrackableValue = subBucketCount;
+        while (smallestUntrackableValue <= highestTrackableValue)
+        {
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2)
+            {
+                bucketCount++;
+                break;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketCount++;
+        }
+
+        counts = new long[(bucketCount + 1) * subBucketHalfCount];
+    }
+
+    /**
+     * Get the largest value that can be recorded.
+     *
+     * @return the highest trackable value.
+     */
+    public long getHighestTrackableValue()
+    {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Get the number of significant decimal digits kept for every value.
+     *
+     * @return the number of significant digits.
+     */
+    public int getSignificantDigits()
+    {
+        return significantDigits;
+    }
+
+    /**
+     * Size of the list of intervals.
+     *
+     * @return size of the interval list.
+     */
+    public int getSize()
+    {
+        return counts.length;
+    }
+
+    /**
+     * Get the lowest value of an interval for an index.
+     *
+     * @param index of the interval.
+     * @return the lowest value counted at the index.
+     */
+    public long getLowerBoundAt(final int index)
+    {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0)
+        {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+
+        return ((long) subBucketIndex) << bucketIndex;
+    }
+
+    /**
+     * Get the upper bound of an interval for an index.
+     *
+     * @param index of the upper bound.
+     * @return the highest value counted at the index.
+     */
+    public long getUpperBoundAt(final int index)
+    {
+        return getLowerBoundAt(index) + getWidthAt(index) - 1L;
+    }
+
+    private long getWidthAt(final int index)
+    {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        return 1L << Math.max(bucketIndex, 0);
+    }
+
+    /**
+     * Get the count of observations at a given index.
+     *
+     * @param index of the observations counter.
+     * @return the count of observations at a given index.
+     */
+    public long getCountAt(final int index)
+    {
+        return counts[index];
+    }
+
+    /**
+     * Get the index of the interval a value is counted in.
+     *
+     * @param value to be located, must be between 0 and the highest trackable value.
+     * @return the index of the interval for the value.
+     */
+    public int indexOf(final long value)
+    {
+        int bucketIndex = 63 - Long.numberOfLeadingZeros(value | subBucketMask) - subBucketHalfCountMagnitude;
+        int subBucketIndex = (int) (value >>> bucketIndex);
+
+        return (bucketIndex << subBucketHalfCountMagnitude) + subBucketIndex;
+    }
+
+    /**
+     * Add an observation to the histogram and increment the counter for the interval it matches.
+     *
+     * @param value for the observation to be added.
+     * @return return true if in the trackable range otherwise false.
+     */
+    public boolean addObservation(final long value)
+    {
+        if (value < 0L || value > highestTrackableValue)
+        {
+            return false;
+        }
+
+        // as indexOf, the interval is the value with its bucket index low bits cleared
+        final int bucketIndex = 63 - Long.numberOfLeadingZeros(value | subBucketMask) - subBucketHalfCountMagnitude;
+        final long subBucketIndex = value >>> bucketIndex;
+        final int index = (bucketIndex << subBucketHalfCountMagnitude) + (int) subBucketIndex;
+
+        counts[index]++;
+        totalCount++;
+        midPointTotal += (subBucketIndex << bucketIndex) + (((1L << bucketIndex) - 1L) >> 1);
+        trackRange(value);
+        if (index < changedIndex)
+        {
+            changedIndex = index;
+        }
+
+        return true;
+    }
+
+    private void trackRange(final long value)
+    {
+        if (value < minValue)
+        {
+            minValue = value;
+        }
+
+        if (value > maxValue)
+        {
+            maxValue = value;
+        }
+    }
+
+    /**
+     * Add observations from another LogLinearHistogram into this one.
+     * Histograms must have the same highest trackable value and precision.
+     *
+     * @param histogram from which to add the observation counts.
+     */
+    public void addObservations(final LogLinearHistogram histogram)
+    {
+        if (highestTrackableValue != histogram.highestTrackableValue ||
+            significantDigits != histogram.significantDigits)
+        {
+            throw new IllegalArgumentException("Histograms must have matching intervals");
+        }
+
+        for (int i = 0, size = counts.length; i < size; i++)
+        {
+            counts[i] += histogram.counts[i];
+        }
+        totalCount += histogram.totalCount;
+        midPointTotal += histogram.midPointTotal;
+        changedIndex = 0;
+
+        if (0L != histogram.totalCount)
+        {
+            trackRange(histogram.minValue);
+            trackRange(histogram.maxValue);
+        }
+    }
+
+    /**
+     * Clear the list of interval counters.
+     */
+    public void clear()
+    {
+        maxValue = 0L;
+        minValue = Long.MAX_VALUE;
+        totalCount = 0L;
+        midPointTotal = 0.0d;
+        changedIndex = 0;
+
+        for (int i = 0, size = counts.length; i < size; i++)
+        {
+            counts[i] = 0L;
+        }
+    }
+
+    /**
+     * Count total number of recorded observations.
+     *
+     * @return the total number of recorded observations.
+     */
+    public long getCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Get the minimum observed value.
+     *
+     * @return the minimum value observed.
+     */
+    public long getMin()
+    {
+        return minValue;
+    }
+
+    /**
+     * Get the maximum observed value.
+     *
+     * @return the maximum of the observed values;
+     */
+    public long getMax()
+    {
+        return maxValue;
+    }
+
+    /**
+     * Calculate the mean of all recorded observations.
+     *
+     * The mean is calculated by summing the mid points of each non empty interval, clamped to the
+     * observed min and max, multiplied by the count for that interval, then dividing by the total
+     * count of observations. The sum is kept as observations are added, only the intervals of the
+     * min and max are clamped here.
+     *
+     * @return the mean of all recorded observations.
+     */
+    public double getMean()
+    {
+        if (0L == totalCount)
+        {
+            return 0.0d;
+        }
+
+        double total = midPointTotal;
+        final int minIndex = indexOf(minValue);
+        final int maxIndex = indexOf(maxValue);
+        total += clampedMidPointDelta(minIndex);
+        if (maxIndex != minIndex)
+        {
+            total += clampedMidPointDelta(maxIndex);
+        }
+
+        return total / totalCount;
+    }
+
+    private double clampedMidPointDelta(final int index)
+    {
+        final long delta = getMidPointAt(index, minValue, maxValue) - getMidPointAt(index, 0L, Long.MAX_VALUE);
+        return delta * (double) counts[index];
+    }
+
+    private long getMidPointAt(final int index, final long lowest, final long highest)
+    {
+        final long lowerBound = Math.max(getLowerBoundAt(index), lowest);
+        final long upperBound = Math.min(getUpperBoundAt(index), highest);
+
+        return lowerBound + ((upperBound - lowerBound) / 2L);
+    }
+
+    /**
+     * Calculate the upper bound within which 99% of observations fall.
+     *
+     * @return the upper bound for 99% of observations.
+     */
+    public long getTwoNinesUpperBound()
+    {
+        return getUpperBoundForFactor(0.99d);
+    }
+
+    /**
+     * Calculate the upper bound within which 99.99% of observations fall.
+     *
+     * @return the upper bound for 99.99% of observations.
+     */
+    public long getFourNinesUpperBound()
+    {
+        return getUpperBoundForFactor(0.9999d);
+    }
+
+    /**
+     * Get the interval upper bound for a given factor of the observation population, never above
+     * the maximum observed value.
+     *
+     * @param factor representing the size of the population, 1.0 gives the max.
+     * @return the interval upper bound.
+     */
+    public long getUpperBoundForFactor(final double factor)
+    {
+        return getValueAtFactor(factor, false);
+    }
+
+    /**
+     * Get the value below or at which a given factor of the observation population falls.
+     *
+     * @param factor      representing the size of the population, 1.0 gives the max.
+     * @param interpolate true to interpolate linearly between the bounds of the interval the value falls in,
+     *                    assuming its observations are spread evenly, false for the interval upper bound.
+     * @return the value for the factor, clamped to the observed min and max.
+     */
+    public long getValueAtFactor(final double factor, final boolean interpolate)
+    {
+        if (0.0d >= factor || factor > 1.0d)
+        {
+            throw new IllegalArgumentException("factor must be > 0.0 and <= 1.0");
+        }
+
+        if (0L == totalCount)
+        {
+            return 0L;
+        }
+
+        buildIndex();
+
+        final long rank = Math.max(1L, (long) Math.ceil(totalCount * factor));
+        final int index = firstIndexAbove(rank - 1L);
+        final long upperBound = Math.min(getUpperBoundAt(index), maxValue);
+        if (!interpolate)
+        {
+            return upperBound;
+        }
+
+        final long lowerBound = Math.max(getLowerBoundAt(index), minValue);
+        final long below = firstIndex == index ? 0L : cumulativeCounts[index - 1];
+
+        return lowerBound + (long) ((upperBound - lowerBound) * ((rank - below) / (double) counts[index]));
+    }
+
+    /**
+     * Get the values for several factors of the observation population at once, e.g. p50, p90, p99.9,
+     * p99.999 and max for a report, sharing one pass over the intervals to index them.
+     *
+     * @param factors     representing sizes of the population, each > 0.0 and <= 1.0.
+     * @param interpolate true to interpolate inside the intervals, see {@link #getValueAtFactor(double, boolean)}.
+     * @return the value for every factor, in the same order.
+     */
+    public long[] getValuesAtFactors(final double[] factors, final boolean interpolate)
+    {
+        final long[] values = new long[factors.length];
+        for (int i = 0; i < factors.length; i++)
+        {
+            values[i] = getValueAtFactor(factors[i], interpolate);
+        }
+
+        return values;
+    }
+
+    private int firstIndexAbove(final long count)
+    {
+        int low = firstIndex;
+        int high = lastIndex;
+
+        while (low < high)
+        {
+            int mid = low + ((high - low) >> 1);
+            if (cumulativeCounts[mid] <= count)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sum the counts into the cumulative index, once after observations were added. The index is only
+     * allocated by the first query, recording alone never needs it. The cumulative counts below the
+     * lowest interval changed since, and below the previous max, are still valid and kept.
+     */
+    private void buildIndex()
+    {
+        if (Integer.MAX_VALUE == changedIndex)
+        {
+            return;
+        }
+
+        if (null == cumulativeCounts)
+        {
+            cumulativeCounts = new long[counts.length];
+        }
+
+        // only the intervals from the min to the max value can hold observations
+        final int previousLastIndex = lastIndex;
+        firstIndex = indexOf(minValue);
+        lastIndex = indexOf(maxValue);
+
+        final int from = Math.max(firstIndex, Math.min(changedIndex, previousLastIndex + 1));
+        long cumulative = firstIndex == from ? 0L : cumulativeCounts[from - 1];
+        for (int i = from; i <= lastIndex; i++)
+        {
+            cumulative += counts[i];
+            cumulativeCounts[i] = cumulative;
+        }
+
+        changedIndex = Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Histogram {\n");
+
+        sb.append(" count=").append(getCount()).append(", ");
+        sb.append(" min=").append(getMin()).append(", ");
+        sb.append(" max=").append(getMax()).append(", ");
+        sb.append(" mean=").append(String.format("%.2f", getMean())).append(", ");
+        sb.append(" 99%=").append(getTwoNinesUpperBound()).append(", ");
+        sb.append(" 99.99%=").append(getFourNinesUpperBound());
+
+        sb.append("\n intervals = [");
+        boolean empty = true;
+        for (int i = 0, size = counts.length; i < size; i++)
+        {
+            if (0L != counts[i])
+            {
+                sb.append("\n  ").append(getUpperBoundAt(i)).append('=').append(counts[i]).append(", ");
+                empty = false;
+            }
+        }
+
+        if (!empty)
+        {
+            sb.setLength(sb.length() - 2);
+        }
+        sb.append("] ");
+
+        sb.append("\n}");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package io.netty.perf.collection;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics of a small sample of values, e.g. one metric over the iterations of a benchmark.
+ *
+ * The confidence interval uses Student's t distribution, which is what matters for the handful of
+ * iterations a benchmark run usually has.
+ */
+public final class SampleStatistics
+{
+    /**
+     * Two sided 95% critical values of Student's t distribution for 1 to 30 degrees of freedom.
+     */
+    private static final double[] T_95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+    private static final double Z_95 = 1.960;
+
+    private final double[] values;
+
+    /**
+     * Create the statistics of a sample.
+     *
+     * @param values of the sample, at least one.
+     */
+    public SampleStatistics(final double[] values)
+    {
+        if (values.length == 0)
+        {
+            throw new IllegalArgumentException("values must not be empty");
+        }
+
+        this.values = Arrays.copyOf(values, values.length);
+    }
+
+    /**
+     * Size of the sample.
+     *
+     * @return the number of values.
+     */
+    public int getCount()
+    {
+        return values.length;
+    }
+
+    /**
+     * Get the smallest value of the sample.
+     *
+     * @return the minimum value.
+     */
+    public double getMin()
+    {
+        double min = values[0];
+        for (final double value : values)
+        {
+            min = Math.min(min, value);
+        }
+
+        return min;
+    }
+
+    /**
+     * Get the largest value of the sample.
+     *
+     * @return the maximum value.
+     */
+    public double getMax()
+    {
+        double max = values[0];
+        for (final double value : values)
+        {
+            max = Math.max(max, value);
+        }
+
+        return max;
+    }
+
+    /**
+     * Calculate the arithmetic mean of the sample.
+     *
+     * @return the mean of the values.
+     */
+    public double getMean()
+    {
+        double total = 0.0d;
+        for (final double value : values)
+        {
+            total += value;
+        }
+
+        return total / values.length;
+    }
+
+    /**
+     * Calculate the unbiased sample variance, 0 for a single value.
+     *
+     * @return the variance of the values.
+     */
+    public double getVariance()
+    {
+        if (values.length < 2)
+        {
+            return 0.0d;
+        }
+
+        final double mean = getMean();
+        double total = 0.0d;
+        for (final double value : values)
+        {
+            total += (value - mean) * (value - mean);
+        }
+
+        return total / (values.length - 1);
+    }
+
+    /**
+     * Calculate the sample standard deviation.
+     *
+     * @return the standard deviation of the values.
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Calculate the half width of the 95% confidence interval of the mean, 0 for a single value.
+     *
+     * @return the mean plus or minus this value bounds the true mean with 95% confidence.
+     */
+    public double getConfidenceInterval95()
+    {
+        if (values.length < 2)
+        {
+            return 0.0d;
+        }
+
+        final int degreesOfFreedom = values.length - 1;
+        final double t = degreesOfFreedom <= T_95.length ? T_95[degreesOfFreedom - 1] : Z_95;
+
+        return t * getStandardDeviation() / Math.sqrt(values.length);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("mean=%.2f, +-95%%=%.2f, stddev=%.2f, min=%.2f, max=%.2f, n=%d",
+            getMean(), getConfidenceInterval95(), getStandardDeviation(), getMin(), getMax(), getCount());
+    }
+}
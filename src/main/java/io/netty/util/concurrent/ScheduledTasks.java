@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+/**
+ * Tells whether a scheduled task of a {@link SingleThreadEventExecutor} is due, for a task running on the executor
+ * that has to return in time for it. The scheduled tasks are kept package private, hence this class lives in their
+ * package.
+ */
+public final class ScheduledTasks {
+
+    private ScheduledTasks() {
+    }
+
+    /**
+     * Must be called on the executor.
+     *
+     * @param executor whose scheduled tasks to check.
+     * @return true if the deadline of a scheduled task has passed.
+     */
+    public static boolean isTaskDue(SingleThreadEventExecutor executor) {
+        ScheduledFutureTask<?> task = executor.delayedTaskQueue.peek();
+        return task != null && task.deadlineNanos() <= ScheduledFutureTask.nanoTime();
+    }
+}
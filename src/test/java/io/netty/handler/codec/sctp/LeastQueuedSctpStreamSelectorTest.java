@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.sctp;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.sctp.SctpMessage;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LeastQueuedSctpStreamSelectorTest {
+
+    @Test
+    public void releasesOldestSelectionFirst() {
+        LeastQueuedSctpStreamSelector selector = new LeastQueuedSctpStreamSelector();
+        assertEquals(0, selector.selectStream(Unpooled.EMPTY_BUFFER, 0, 2));
+        assertEquals(1, selector.selectStream(Unpooled.EMPTY_BUFFER, 0, 2));
+        assertEquals(2, selector.selectStream(Unpooled.EMPTY_BUFFER, 0, 2));
+        assertEquals(0, selector.selectStream(Unpooled.EMPTY_BUFFER, 0, 2));
+
+        // the writes on stream 0 and 1 complete, leaving one queued on 0 and 2
+        selector.messageWritten();
+        selector.messageWritten();
+        assertEquals(1, selector.selectStream(Unpooled.EMPTY_BUFFER, 0, 2));
+    }
+
+    @Test
+    public void selectsLeastQueuedStreamWithinRange() {
+        LeastQueuedSctpStreamSelector selector = new LeastQueuedSctpStreamSelector();
+        Random random = new Random(42);
+        int minStream = 3;
+        int[] queued = new int[4];
+        Deque<Integer> unwritten = new ArrayDeque<Integer>();
+
+        for (int i = 0; i < 10000; i++) {
+            // let up to 40 writes pile up so the FIFO of the selector has to grow and wrap around
+            if (!unwritten.isEmpty() && (unwritten.size() > 40 || random.nextInt(3) == 0)) {
+                selector.messageWritten();
+                queued[unwritten.removeFirst() - minStream]--;
+                continue;
+            }
+
+            int stream = selector.selectStream(Unpooled.EMPTY_BUFFER, minStream, minStream + queued.length - 1);
+            assertTrue("stream " + stream, stream >= minStream && stream < minStream + queued.length);
+            for (int count : queued) {
+                assertTrue(queued[stream - minStream] <= count);
+            }
+            queued[stream - minStream]++;
+            unwritten.addLast(stream);
+        }
+    }
+
+    @Test
+    public void releasesOnceWriteCompletes() {
+        CountingSelector selector = new CountingSelector();
+        EmbeddedChannel channel = new EmbeddedChannel(new SctpOutboundStreamingHandler(0, 0, 2, selector));
+
+        for (int i = 0; i < 4; i++) {
+            channel.write(Unpooled.wrappedBuffer(new byte[] { (byte) i }));
+        }
+        assertEquals(0, selector.written);
+
+        channel.flush();
+        assertEquals(4, selector.written);
+        int[] expectedStreams = { 0, 1, 2, 0 };
+        for (int expectedStream : expectedStreams) {
+            SctpMessage message = (SctpMessage) channel.readOutbound();
+            assertEquals(expectedStream, message.streamIdentifier());
+            message.release();
+        }
+        channel.finish();
+    }
+
+    @Test
+    public void releasesWritesWithVoidPromise() {
+        // the echo of the latency tests writes with the void promise, which takes no listeners
+        CountingSelector selector = new CountingSelector();
+        EmbeddedChannel channel = new EmbeddedChannel(new SctpOutboundStreamingHandler(0, 0, 2, selector));
+
+        for (int i = 0; i < 4; i++) {
+            channel.write(Unpooled.wrappedBuffer(new byte[] { (byte) i }), channel.voidPromise());
+        }
+        channel.flush();
+        assertEquals(4, selector.written);
+        for (int i = 0; i < 4; i++) {
+            SctpMessage message = (SctpMessage) channel.readOutbound();
+            assertEquals(i % 3, message.streamIdentifier());
+            message.release();
+        }
+
+        assertNull(channel.readOutbound());
+        channel.finish();
+    }
+
+    private static final class CountingSelector extends LeastQueuedSctpStreamSelector {
+        int written;
+
+        @Override
+        public void messageWritten() {
+            written++;
+            super.messageWritten();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.sctp;
+
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RoundRobinSctpStreamSelectorTest {
+
+    @Test
+    public void staysWithinRangeAndWraps() {
+        RoundRobinSctpStreamSelector selector = new RoundRobinSctpStreamSelector();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(3 + i % 3, selector.selectStream(Unpooled.EMPTY_BUFFER, 3, 5));
+        }
+    }
+
+    @Test
+    public void singleStream() {
+        RoundRobinSctpStreamSelector selector = new RoundRobinSctpStreamSelector();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(7, selector.selectStream(Unpooled.EMPTY_BUFFER, 7, 7));
+        }
+    }
+
+    @Test
+    public void restartsAtMinStreamWhenRangeChanges() {
+        RoundRobinSctpStreamSelector selector = new RoundRobinSctpStreamSelector();
+        assertEquals(0, selector.selectStream(Unpooled.EMPTY_BUFFER, 0, 9));
+        assertEquals(1, selector.selectStream(Unpooled.EMPTY_BUFFER, 0, 9));
+        assertEquals(4, selector.selectStream(Unpooled.EMPTY_BUFFER, 4, 6));
+        assertEquals(5, selector.selectStream(Unpooled.EMPTY_BUFFER, 4, 6));
+        assertEquals(6, selector.selectStream(Unpooled.EMPTY_BUFFER, 4, 6));
+        assertEquals(4, selector.selectStream(Unpooled.EMPTY_BUFFER, 4, 6));
+    }
+}
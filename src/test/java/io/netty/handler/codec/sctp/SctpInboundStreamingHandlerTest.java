@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.sctp.SctpMessage;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SctpInboundStreamingHandlerTest {
+    private static final int PROTOCOL_IDENTIFIER = 42;
+
+    private final SctpInboundStreamingHandler handler = new SctpInboundStreamingHandler(PROTOCOL_IDENTIFIER, 1, 3);
+    private final StreamRecorder recorder = new StreamRecorder();
+    private final EmbeddedChannel channel = new EmbeddedChannel(handler, recorder);
+
+    private static ByteBuf content(String text) {
+        return Unpooled.copiedBuffer(text, CharsetUtil.US_ASCII);
+    }
+
+    private static SctpMessage message(int stream, ByteBuf content, boolean complete) {
+        MessageInfo info = MessageInfo.createOutgoing(null, stream).payloadProtocolID(PROTOCOL_IDENTIFIER);
+        return new SctpMessage(info.complete(complete), content);
+    }
+
+    private String readInbound() {
+        ByteBuf message = (ByteBuf) channel.readInbound();
+        try {
+            return message.toString(CharsetUtil.US_ASCII);
+        } finally {
+            message.release();
+        }
+    }
+
+    @Test
+    public void reassemblesInterleavedFragmentsPerStream() {
+        ByteBuf[] contents = { content("a1"), content("b1"), content("a2"), content("b2"), content("a3") };
+        channel.writeInbound(message(1, contents[0], false));
+        channel.writeInbound(message(2, contents[1], false));
+        channel.writeInbound(message(1, contents[2], false));
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(message(2, contents[3], true));
+        assertEquals("b1b2", readInbound());
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(message(1, contents[4], true));
+        assertEquals("a1a2a3", readInbound());
+        assertNull(channel.readInbound());
+
+        assertEquals(2, recorder.streams.size());
+        assertEquals(2, (int) recorder.streams.get(0));
+        assertEquals(1, (int) recorder.streams.get(1));
+        for (ByteBuf content : contents) {
+            assertEquals(0, content.refCnt());
+        }
+        channel.finish();
+    }
+
+    @Test
+    public void passesUnfragmentedMessageUnchanged() {
+        ByteBuf content = content("whole");
+        channel.writeInbound(new SctpMessage(PROTOCOL_IDENTIFIER, 3, content));
+
+        ByteBuf message = (ByteBuf) channel.readInbound();
+        assertSame(content, message);
+        assertEquals(1, content.refCnt());
+        assertEquals(3, (int) recorder.streams.get(0));
+        assertEquals(3, (int) channel.attr(SctpInboundStreamingHandler.STREAM_IDENTIFIER).get());
+
+        message.release();
+        assertEquals(0, content.refCnt());
+        channel.finish();
+    }
+
+    @Test
+    public void streamIdentifierFollowsEveryMessage() {
+        int[] streams = { 1, 3, 3, 2, 1, 2 };
+        channel.writeInbound(message(2, content("x"), false));
+        for (int stream : streams) {
+            channel.writeInbound(message(stream, content("m" + stream), true));
+        }
+        assertEquals(streams.length, recorder.streams.size());
+        for (int i = 0; i < streams.length; i++) {
+            assertEquals(streams[i], (int) recorder.streams.get(i));
+        }
+        // the first stream 2 message completes the pending fragment
+        String[] expected = { "m1", "m3", "m3", "xm2", "m1", "m2" };
+        for (String message : expected) {
+            assertEquals(message, readInbound());
+        }
+        channel.finish();
+    }
+
+    @Test
+    public void releasesPendingFragmentsWhenInactive() {
+        ByteBuf[] contents = { content("a1"), content("b1"), content("a2") };
+        channel.writeInbound(message(1, contents[0], false));
+        channel.writeInbound(message(2, contents[1], false));
+        channel.writeInbound(message(1, contents[2], false));
+        for (ByteBuf content : contents) {
+            assertEquals(1, content.refCnt());
+        }
+
+        channel.finish();
+        assertNull(channel.readInbound());
+        for (ByteBuf content : contents) {
+            assertEquals(0, content.refCnt());
+        }
+    }
+
+    @Test
+    public void releasesPendingFragmentsWhenRemoved() {
+        ByteBuf[] contents = { content("a1"), content("b1") };
+        channel.writeInbound(message(1, contents[0], false));
+        channel.writeInbound(message(3, contents[1], false));
+
+        channel.pipeline().remove(handler);
+        for (ByteBuf content : contents) {
+            assertEquals(0, content.refCnt());
+        }
+        channel.finish();
+    }
+
+    private static final class StreamRecorder extends ChannelInboundHandlerAdapter {
+        final List<Integer> streams = new ArrayList<Integer>();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            streams.add(ctx.channel().attr(SctpInboundStreamingHandler.STREAM_IDENTIFIER).get());
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
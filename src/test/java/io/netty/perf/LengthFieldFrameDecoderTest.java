@@ -0,0 +1,198 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class LengthFieldFrameDecoderTest {
+    private final static int MAX_FRAME_LENGTH = 64;
+
+    private static ByteBuf frames(int... lengths) {
+        ByteBuf buf = Unpooled.buffer();
+        for (int i = 0; i < lengths.length; i++) {
+            buf.writeInt(lengths[i]);
+            for (int j = 0; j < lengths[i]; j++) {
+                buf.writeByte(i);
+            }
+        }
+        return buf;
+    }
+
+    private static ByteBuf read(ByteBuf stream, int length) {
+        return stream.readBytes(length);
+    }
+
+    private static ByteBuf assertFrame(EmbeddedChannel channel, int length, int fill) {
+        ByteBuf frame = (ByteBuf) channel.readInbound();
+        assertEquals(length, frame.readableBytes());
+        for (int i = 0; i < length; i++) {
+            assertEquals(fill, frame.getByte(frame.readerIndex() + i));
+        }
+        return frame;
+    }
+
+    @Test
+    public void coalescedFramesAreSlicesOfTheRead() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LengthFieldFrameDecoder(MAX_FRAME_LENGTH));
+        ByteBuf read = frames(24, 0, 40);
+
+        channel.writeInbound(read);
+        ByteBuf[] frames = { assertFrame(channel, 24, 0), assertFrame(channel, 0, 1), assertFrame(channel, 40, 2) };
+        assertNull(channel.readInbound());
+        assertSame(read, frames[0].unwrap());
+        assertSame(read, frames[2].unwrap());
+
+        // the read stays alive as long as its frames, an empty one is no slice of it
+        assertEquals(2, read.refCnt());
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+        assertEquals(0, read.refCnt());
+        channel.finish();
+    }
+
+    @Test
+    public void splitFrameIsPassedOnOnceComplete() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LengthFieldFrameDecoder(MAX_FRAME_LENGTH));
+        ByteBuf stream = frames(24);
+
+        // the length field split too
+        ByteBuf[] reads = { read(stream, 2), read(stream, 3), read(stream, 10), read(stream, 13) };
+        for (int i = 0; i < reads.length - 1; i++) {
+            channel.writeInbound(reads[i]);
+            assertNull(channel.readInbound());
+            assertEquals(0, reads[i].refCnt());
+        }
+        channel.writeInbound(reads[reads.length - 1]);
+
+        ByteBuf frame = assertFrame(channel, 24, 0);
+        assertEquals(0, reads[reads.length - 1].refCnt());
+        frame.release();
+        assertEquals(0, frame.refCnt());
+        channel.finish();
+    }
+
+    @Test
+    public void onlyTheStraddlingFrameIsCopied() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LengthFieldFrameDecoder(MAX_FRAME_LENGTH));
+        ByteBuf stream = frames(24, 32, 16, 8);
+        ByteBuf first = read(stream, 28 + 10);
+        ByteBuf second = read(stream, stream.readableBytes() - 5);
+        ByteBuf third = read(stream, 5);
+
+        channel.writeInbound(first);
+        ByteBuf frame0 = assertFrame(channel, 24, 0);
+        assertSame(first, frame0.unwrap());
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(second);
+        ByteBuf frame1 = assertFrame(channel, 32, 1);
+        ByteBuf frame2 = assertFrame(channel, 16, 2);
+        assertNull(channel.readInbound());
+        // a buffer of its own holding the straddling frame alone, the frame after it a slice of the read
+        assertNotSame(first, frame1.unwrap());
+        assertNotSame(second, frame1.unwrap());
+        assertEquals(4 + 32, frame1.capacity());
+        assertSame(second, frame2.unwrap());
+
+        channel.writeInbound(third);
+        ByteBuf frame3 = assertFrame(channel, 8, 3);
+        assertEquals(4 + 8, frame3.capacity());
+
+        for (ByteBuf frame : new ByteBuf[] { frame0, frame1, frame2, frame3 }) {
+            frame.release();
+        }
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        assertEquals(0, third.refCnt());
+        channel.finish();
+    }
+
+    @Test
+    public void partialFrameIsReleasedWhenInactive() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LengthFieldFrameDecoder(MAX_FRAME_LENGTH));
+        RecordingAllocator allocator = new RecordingAllocator();
+        channel.config().setAllocator(allocator);
+        ByteBuf stream = frames(24);
+        ByteBuf read = read(stream, 12);
+
+        channel.writeInbound(read);
+        assertEquals(0, read.refCnt());
+        assertEquals(1, allocator.buffers.size());
+        assertEquals(1, allocator.buffers.get(0).refCnt());
+
+        channel.finish();
+        assertNull(channel.readInbound());
+        assertEquals(0, allocator.buffers.get(0).refCnt());
+    }
+
+    @Test
+    public void invalidLengthsAreRejected() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LengthFieldFrameDecoder(MAX_FRAME_LENGTH));
+        ByteBuf read = Unpooled.buffer().writeInt(-1).writeLong(0L);
+        try {
+            channel.writeInbound(read);
+            fail();
+        } catch (CorruptedFrameException expected) {
+            assertEquals(0, read.refCnt());
+        }
+
+        channel = new EmbeddedChannel(new LengthFieldFrameDecoder(MAX_FRAME_LENGTH));
+        read = frames(MAX_FRAME_LENGTH + 1);
+        try {
+            channel.writeInbound(read);
+            fail();
+        } catch (TooLongFrameException expected) {
+            assertEquals(0, read.refCnt());
+        }
+    }
+
+    private static final class RecordingAllocator extends AbstractByteBufAllocator {
+        final List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+
+        @Override
+        protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+            ByteBuf buffer = Unpooled.buffer(initialCapacity, maxCapacity);
+            buffers.add(buffer);
+            return buffer;
+        }
+
+        @Override
+        protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+            return newHeapBuffer(initialCapacity, maxCapacity);
+        }
+
+        @Override
+        public boolean isDirectBufferPooled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PerfMainTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static PerfConfig config(String resultsDir, int frameSize) {
+        return new PerfConfig().mode(PerfConfig.Mode.THROUGHPUT).frameSize(frameSize).resultsDir(resultsDir);
+    }
+
+    private static ResultSummary write(PerfConfig config, int index, long messages, boolean firstOfRun)
+            throws IOException {
+        Throughput throughput = new Throughput(messages, messages * config.frameSize(), TimeUnit.SECONDS.toNanos(1),
+                -1L, -1L, -1L);
+        List<Object> results = Collections.<Object>singletonList(throughput);
+        ResultSummary summary = ResultSummary.of(config, results);
+        PerfMain.writeResults(config, index, results, summary, firstOfRun);
+        return summary;
+    }
+
+    private static List<String> lines(File dir, String name) throws IOException {
+        return Files.readAllLines(new File(dir, name).toPath(), Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void rerunIntoTheSameDirectoryReplacesTheResults() throws IOException {
+        File dir = folder.getRoot();
+        PerfConfig small = config(dir.getPath(), 64);
+        PerfConfig large = config(dir.getPath(), 1024);
+
+        write(small, 1, 2000L, true);
+        write(large, 2, 1000L, false);
+        assertEquals(3, lines(dir, "results.csv").size());
+        assertEquals(2, lines(dir, "results.jsonl").size());
+
+        ResultSummary rerun = write(small, 1, 500L, true);
+        assertEquals(2, lines(dir, "results.csv").size());
+        assertEquals(1, lines(dir, "results.jsonl").size());
+
+        // the rerun alone is the baseline now, the configuration it did not run is no longer checked
+        Baseline baseline = Baseline.load(new File(dir, "results.csv").getPath());
+        assertTrue(baseline.regressions(rerun, 0.0d).isEmpty());
+        ResultSummary slower = ResultSummary.of(small, Collections.<Object>singletonList(
+                new Throughput(400L, 400L * 64, TimeUnit.SECONDS.toNanos(1), -1L, -1L, -1L)));
+        assertEquals(1, baseline.regressions(slower, 10.0d).size());
+        assertTrue(baseline.regressions(ResultSummary.of(large, Collections.<Object>singletonList(
+                new Throughput(1L, 1024L, TimeUnit.SECONDS.toNanos(1), -1L, -1L, -1L))), 0.0d).isEmpty());
+    }
+}
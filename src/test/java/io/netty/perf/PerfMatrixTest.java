@@ -0,0 +1,62 @@
+package io.netty.perf;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.netty.channel.ChannelOption;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PerfMatrixTest {
+
+    private static void assertRejected(String name, String value, String message) throws IOException {
+        try {
+            PerfMatrix.parse(new String[] { "--" + name, value });
+            fail(name + "=" + value + " was accepted");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(message, expected.getMessage());
+        }
+    }
+
+    @Test
+    public void histogramSettingsAreCheckedWhenParsed() throws IOException {
+        List<PerfConfig> configs = PerfMatrix.parse(
+                new String[] { "--significantDigits", "0,5", "--highestTrackableLatency", "2" });
+        assertEquals(0, configs.get(0).significantDigits());
+        assertEquals(5, configs.get(1).significantDigits());
+        assertEquals(2L, configs.get(1).highestTrackableLatency());
+
+        assertRejected("significantDigits", "-1", "significantDigits must be between 0 and 5");
+        assertRejected("significantDigits", "6", "significantDigits must be between 0 and 5");
+        assertRejected("highestTrackableLatency", "1", "highestTrackableLatency must be >= 2");
+    }
+
+    @Test
+    public void booleansAreTrueOrFalse() throws IOException {
+        List<PerfConfig> configs = PerfMatrix.parse(
+                new String[] { "--subtractClockOverhead", "true,FALSE", "--option.TCP_NODELAY", "false" });
+        assertEquals(true, configs.get(0).subtractClockOverhead());
+        assertEquals(false, configs.get(1).subtractClockOverhead());
+        assertEquals(false, configs.get(0).options().get(ChannelOption.TCP_NODELAY));
+
+        assertRejected("subtractClockOverhead", "ture", "subtractClockOverhead expects true or false, got ture");
+        assertRejected("option.TCP_NODELAY", "1", "TCP_NODELAY expects true or false, got 1");
+    }
+}
@@ -0,0 +1,152 @@
+package io.netty.perf.collection;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest
+{
+    private static Histogram newHistogram(final int intervals, final long width)
+    {
+        final long[] upperBounds = new long[intervals];
+        for (int i = 0; i < intervals; i++)
+        {
+            upperBounds[i] = (i + 1) * width;
+        }
+
+        return new Histogram(upperBounds);
+    }
+
+    private static void assertMatchesLinearScan(final Histogram histogram, final double factor)
+    {
+        final LinearScan linearScan = LinearScan.of(histogram);
+        final String message = "factor " + factor;
+        assertEquals(message, linearScan.valueAtFactor(factor, false), histogram.getUpperBoundForFactor(factor));
+        assertEquals(message, linearScan.valueAtFactor(factor, false), histogram.getValueAtFactor(factor, false));
+        assertEquals(message, linearScan.valueAtFactor(factor, true), histogram.getValueAtFactor(factor, true));
+    }
+
+    @Test
+    public void emptyHistogram()
+    {
+        final Histogram histogram = newHistogram(4, 10L);
+
+        assertEquals(0.0d, histogram.getMean(), 0.0d);
+        assertEquals(0L, histogram.getUpperBoundForFactor(0.5d));
+        assertEquals(0L, histogram.getValueAtFactor(1.0d, false));
+        assertEquals(0L, histogram.getValueAtFactor(1.0d, true));
+    }
+
+    @Test
+    public void upperBoundAndValueAtFactorAgree()
+    {
+        final Histogram histogram = newHistogram(4, 10L);
+        for (long value = 1L; value <= 40L; value++)
+        {
+            histogram.addObservation(value);
+        }
+
+        assertEquals(20L, histogram.getUpperBoundForFactor(0.5d));
+        assertEquals(20L, histogram.getValueAtFactor(0.5d, false));
+        assertEquals(20L, histogram.getValueAtFactor(0.5d, true));
+        assertEquals(15L, histogram.getValueAtFactor(0.375d, true));
+        assertEquals(20.0d, histogram.getMean(), 0.0d);
+    }
+
+    @Test
+    public void boundaryRanks()
+    {
+        final Histogram histogram = newHistogram(4, 10L);
+        for (long value = 1L; value <= 40L; value++)
+        {
+            histogram.addObservation(value);
+        }
+
+        // every rank, and just below and above it, across the interval bounds
+        for (int rank = 1; rank <= 40; rank++)
+        {
+            assertMatchesLinearScan(histogram, rank / 40.0d);
+            assertMatchesLinearScan(histogram, Math.nextDown(rank / 40.0d));
+            if (rank < 40)
+            {
+                assertMatchesLinearScan(histogram, Math.nextUp(rank / 40.0d));
+            }
+        }
+    }
+
+    @Test
+    public void factorOneGivesMax()
+    {
+        final Histogram histogram = newHistogram(10, 100L);
+        histogram.addObservation(5L);
+        histogram.addObservation(250L);
+        histogram.addObservation(317L);
+
+        assertEquals(317L, histogram.getUpperBoundForFactor(1.0d));
+        assertEquals(317L, histogram.getValueAtFactor(1.0d, true));
+        assertMatchesLinearScan(histogram, 1.0d);
+    }
+
+    @Test
+    public void matchesLinearScanAsObservationsAreAdded()
+    {
+        final Histogram histogram = newHistogram(200, 50000L);
+        final Random random = new Random(42L);
+        final double[] factors = {0.001d, 0.25d, 0.5d, 0.9d, 0.99d, 0.999d, 0.9999d, 1.0d};
+
+        for (int round = 0; round < 20; round++)
+        {
+            for (int i = 0; i < 1000; i++)
+            {
+                histogram.addObservation(20000L + (long) (-Math.log(1.0d - random.nextDouble()) * 80000.0d));
+            }
+
+            // the index is rebuilt by the first query after new observations
+            for (final double factor : factors)
+            {
+                assertMatchesLinearScan(histogram, factor);
+            }
+            assertEquals(LinearScan.of(histogram).mean(), histogram.getMean(), 1e-6d);
+        }
+    }
+
+    @Test
+    public void matchesLinearScanAfterMergeAndClear()
+    {
+        final Histogram histogram = newHistogram(20, 10L);
+        final Histogram other = newHistogram(20, 10L);
+        for (long value = 50L; value <= 150L; value += 3L)
+        {
+            histogram.addObservation(value);
+            other.addObservation(value / 2L);
+        }
+        assertMatchesLinearScan(histogram, 0.5d);
+
+        histogram.addObservations(other);
+        assertMatchesLinearScan(histogram, 0.1d);
+        assertMatchesLinearScan(histogram, 0.5d);
+        assertEquals(LinearScan.of(histogram).mean(), histogram.getMean(), 1e-6d);
+
+        histogram.clear();
+        assertEquals(0L, histogram.getUpperBoundForFactor(0.5d));
+        histogram.addObservation(42L);
+        assertEquals(42L, histogram.getValueAtFactor(0.5d, true));
+    }
+}
@@ -0,0 +1,127 @@
+package io.netty.perf.collection;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The percentile and mean queries the histograms answered before they kept a cumulative index, a scan over
+ * every interval per query, as the reference the indexed queries are checked against.
+ */
+final class LinearScan
+{
+    private final long[] lowerBounds;
+    private final long[] upperBounds;
+    private final long[] counts;
+    private final long min;
+    private final long max;
+    private final long totalCount;
+
+    LinearScan(final long[] lowerBounds, final long[] upperBounds, final long[] counts, final long min, final long max)
+    {
+        this.lowerBounds = lowerBounds;
+        this.upperBounds = upperBounds;
+        this.counts = counts;
+        this.min = min;
+        this.max = max;
+
+        long totalCount = 0L;
+        for (final long count : counts)
+        {
+            totalCount += count;
+        }
+        this.totalCount = totalCount;
+    }
+
+    static LinearScan of(final Histogram histogram)
+    {
+        final int size = histogram.getSize();
+        final long[] lowerBounds = new long[size];
+        final long[] upperBounds = new long[size];
+        final long[] counts = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            lowerBounds[i] = 0 == i ? 0L : histogram.getUpperBoundAt(i - 1) + 1L;
+            upperBounds[i] = histogram.getUpperBoundAt(i);
+            counts[i] = histogram.getCountAt(i);
+        }
+
+        return new LinearScan(lowerBounds, upperBounds, counts, histogram.getMin(), histogram.getMax());
+    }
+
+    static LinearScan of(final LogLinearHistogram histogram)
+    {
+        final int size = histogram.getSize();
+        final long[] lowerBounds = new long[size];
+        final long[] upperBounds = new long[size];
+        final long[] counts = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            lowerBounds[i] = histogram.getLowerBoundAt(i);
+            upperBounds[i] = histogram.getUpperBoundAt(i);
+            counts[i] = histogram.getCountAt(i);
+        }
+
+        return new LinearScan(lowerBounds, upperBounds, counts, histogram.getMin(), histogram.getMax());
+    }
+
+    long valueAtFactor(final double factor, final boolean interpolate)
+    {
+        if (0L == totalCount)
+        {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(totalCount * factor));
+        long below = 0L;
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (below + counts[i] >= rank)
+            {
+                final long upperBound = Math.min(upperBounds[i], max);
+                if (!interpolate)
+                {
+                    return upperBound;
+                }
+
+                final long lowerBound = Math.max(lowerBounds[i], min);
+                return lowerBound + (long) ((upperBound - lowerBound) * ((rank - below) / (double) counts[i]));
+            }
+            below += counts[i];
+        }
+
+        throw new AssertionError("rank " + rank + " above the count " + totalCount);
+    }
+
+    double mean()
+    {
+        if (0L == totalCount)
+        {
+            return 0.0d;
+        }
+
+        double total = 0.0d;
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (0L != counts[i])
+            {
+                final long lowerBound = Math.max(lowerBounds[i], min);
+                final long upperBound = Math.min(upperBounds[i], max);
+                total += (lowerBound + ((upperBound - lowerBound) / 2L)) * (double) counts[i];
+            }
+        }
+
+        return total / totalCount;
+    }
+}
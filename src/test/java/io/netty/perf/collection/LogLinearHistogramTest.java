@@ -0,0 +1,172 @@
+package io.netty.perf.collection;
+/*
+ * Copyright 2011 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogLinearHistogramTest
+{
+    private static void assertMatchesLinearScan(final LogLinearHistogram histogram, final double factor)
+    {
+        final LinearScan linearScan = LinearScan.of(histogram);
+        final String message = "factor " + factor;
+        assertEquals(message, linearScan.valueAtFactor(factor, false), histogram.getUpperBoundForFactor(factor));
+        assertEquals(message, linearScan.valueAtFactor(factor, true), histogram.getValueAtFactor(factor, true));
+    }
+
+    @Test
+    public void emptyHistogram()
+    {
+        final LogLinearHistogram histogram = new LogLinearHistogram(1000000L, 2);
+
+        assertEquals(0.0d, histogram.getMean(), 0.0d);
+        assertEquals(0L, histogram.getUpperBoundForFactor(0.5d));
+        assertEquals(0L, histogram.getValueAtFactor(1.0d, true));
+        assertEquals(0L, histogram.getValuesAtFactors(new double[] {0.5d, 1.0d}, true)[1]);
+    }
+
+    @Test
+    public void boundaryRanks()
+    {
+        // 200 values over intervals of growing width, several values per interval above 100
+        final LogLinearHistogram histogram = new LogLinearHistogram(1000000L, 2);
+        for (long value = 1L; value <= 200L; value++)
+        {
+            histogram.addObservation(value * 7L);
+        }
+
+        for (int rank = 1; rank <= 200; rank++)
+        {
+            assertMatchesLinearScan(histogram, rank / 200.0d);
+            assertMatchesLinearScan(histogram, Math.nextDown(rank / 200.0d));
+            if (rank < 200)
+            {
+                assertMatchesLinearScan(histogram, Math.nextUp(rank / 200.0d));
+            }
+        }
+    }
+
+    @Test
+    public void factorOneGivesMax()
+    {
+        final LogLinearHistogram histogram = new LogLinearHistogram(1000000L, 3);
+        histogram.addObservation(3L);
+        histogram.addObservation(123457L);
+
+        assertEquals(123457L, histogram.getUpperBoundForFactor(1.0d));
+        assertEquals(123457L, histogram.getValueAtFactor(1.0d, true));
+        assertMatchesLinearScan(histogram, 1.0d);
+    }
+
+    @Test
+    public void interpolatesInsideTheInterval()
+    {
+        // below 2^significant bits every value has an interval of its own, above they cover several
+        final LogLinearHistogram histogram = new LogLinearHistogram(1000000L, 1);
+        final int index = histogram.indexOf(1000L);
+        final long lowerBound = histogram.getLowerBoundAt(index);
+        final long upperBound = histogram.getUpperBoundAt(index);
+        for (long value = lowerBound; value <= upperBound; value++)
+        {
+            histogram.addObservation(value);
+        }
+
+        final double factor = 0.25d;
+        final long rank = (long) Math.ceil(histogram.getCount() * factor);
+        assertEquals(upperBound, histogram.getValueAtFactor(factor, false));
+        assertEquals(lowerBound + (long) ((upperBound - lowerBound) * (rank / (double) histogram.getCount())),
+                histogram.getValueAtFactor(factor, true));
+        assertMatchesLinearScan(histogram, factor);
+    }
+
+    @Test
+    public void matchesLinearScanAsObservationsAreAdded()
+    {
+        final LogLinearHistogram histogram = new LogLinearHistogram(10000000000L, 3);
+        final Random random = new Random(42L);
+        final double[] factors = {0.001d, 0.25d, 0.5d, 0.9d, 0.99d, 0.999d, 0.9999d, 1.0d};
+
+        for (int round = 0; round < 20; round++)
+        {
+            for (int i = 0; i < 1000; i++)
+            {
+                histogram.addObservation(20000L + (long) (-Math.log(1.0d - random.nextDouble()) * 80000.0d));
+            }
+
+            // the index is rebuilt by the first query after new observations
+            for (final double factor : factors)
+            {
+                assertMatchesLinearScan(histogram, factor);
+            }
+            assertEquals(LinearScan.of(histogram).mean(), histogram.getMean(), 1e-6d);
+
+            final long[] values = histogram.getValuesAtFactors(factors, true);
+            for (int i = 0; i < factors.length; i++)
+            {
+                assertEquals(histogram.getValueAtFactor(factors[i], true), values[i]);
+            }
+        }
+    }
+
+    @Test
+    public void matchesLinearScanWhenQueriedAfterEveryObservation()
+    {
+        // the index is only rebuilt from the lowest changed interval, new maxima leave gaps above the old one
+        final LogLinearHistogram histogram = new LogLinearHistogram(1000000L, 2);
+        final long[] values = {5000L, 300L, 300L, 90000L, 7L, 4000L, 4001L, 600000L, 90000L, 1L, 999999L};
+        for (final long value : values)
+        {
+            histogram.addObservation(value);
+            assertMatchesLinearScan(histogram, 0.3d);
+            assertMatchesLinearScan(histogram, 0.5d);
+            assertMatchesLinearScan(histogram, 1.0d);
+            assertEquals(LinearScan.of(histogram).mean(), histogram.getMean(), 1e-6d);
+        }
+
+        // the counts left below a higher min after a clear are not taken for observations
+        histogram.clear();
+        histogram.addObservation(50000L);
+        histogram.addObservation(50001L);
+        assertMatchesLinearScan(histogram, 0.5d);
+    }
+
+    @Test
+    public void matchesLinearScanAfterMergeAndClear()
+    {
+        final LogLinearHistogram histogram = new LogLinearHistogram(1000000L, 2);
+        final LogLinearHistogram other = new LogLinearHistogram(1000000L, 2);
+        for (long value = 500L; value <= 90000L; value += 311L)
+        {
+            histogram.addObservation(value);
+            other.addObservation(value / 3L);
+        }
+        assertMatchesLinearScan(histogram, 0.5d);
+
+        histogram.addObservations(other);
+        assertMatchesLinearScan(histogram, 0.1d);
+        assertMatchesLinearScan(histogram, 0.5d);
+        assertEquals(LinearScan.of(histogram).mean(), histogram.getMean(), 1e-6d);
+
+        histogram.clear();
+        assertEquals(0L, histogram.getUpperBoundForFactor(0.5d));
+        histogram.addObservation(42L);
+        assertEquals(42L, histogram.getValueAtFactor(0.5d, true));
+    }
+}